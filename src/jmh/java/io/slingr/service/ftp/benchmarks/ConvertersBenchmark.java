@@ -0,0 +1,95 @@
+package io.slingr.service.ftp.benchmarks;
+
+import io.slingr.service.ftp.utils.ToJsonConverter;
+import io.slingr.service.ftp.utils.ToStringConverter;
+import io.slingr.services.utils.Json;
+import org.apache.camel.converter.stream.InputStreamCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the conversion of the content of the files to Json and String.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertersBenchmark {
+
+    @Param({"json", "xml", "form", "plain"})
+    private String format;
+
+    @Param({"100", "10000"})
+    private int records;
+
+    private String value;
+    private String contentType;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder sb = new StringBuilder();
+        switch (format) {
+            case "json":
+                contentType = "application/json";
+                sb.append("{\"records\":[");
+                for (int i = 0; i < records; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append("{\"id\":").append(i).append(",\"name\":\"record ").append(i).append("\",\"active\":true}");
+                }
+                sb.append("]}");
+                break;
+            case "xml":
+                contentType = "application/xml";
+                sb.append("<records>");
+                for (int i = 0; i < records; i++) {
+                    sb.append("<record id=\"").append(i).append("\"><name>record ").append(i).append("</name><active>true</active></record>");
+                }
+                sb.append("</records>");
+                break;
+            case "form":
+                contentType = "application/x-www-form-urlencoded";
+                for (int i = 0; i < records; i++) {
+                    if (i > 0) {
+                        sb.append('&');
+                    }
+                    sb.append("field").append(i).append("=value%20").append(i);
+                }
+                break;
+            default:
+                contentType = "text/plain";
+                for (int i = 0; i < records; i++) {
+                    sb.append("line ").append(i).append(" of the plain text file\n");
+                }
+        }
+        value = sb.toString();
+        bytes = value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Json convertString() {
+        return ToJsonConverter.convertString(value, contentType, false);
+    }
+
+    @Benchmark
+    public Json convertStringWithoutContentType() {
+        return ToJsonConverter.convertString(value, null, false);
+    }
+
+    @Benchmark
+    public String fromStreamCache() {
+        return ToStringConverter.fromObject(new InputStreamCache(bytes));
+    }
+
+    @Benchmark
+    public String fromInputStream() {
+        return ToStringConverter.fromObject(new ByteArrayInputStream(bytes));
+    }
+}
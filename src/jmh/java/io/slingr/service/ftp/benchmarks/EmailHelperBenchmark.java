@@ -0,0 +1,86 @@
+package io.slingr.service.ftp.benchmarks;
+
+import io.slingr.service.ftp.utils.EmailHelper;
+import io.slingr.services.utils.Json;
+import org.openjdk.jmh.annotations.*;
+
+import javax.activation.DataHandler;
+import javax.mail.Multipart;
+import javax.mail.Session;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the parsing of emails: removal of the quoted original message and conversion of
+ * multipart messages with attachments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailHelperBenchmark {
+
+    @Param({"65536", "1048576"})
+    private int attachmentSize;
+
+    private String reply;
+    private String replyWithoutQuote;
+    private Multipart multipart;
+
+    @Setup
+    public void setUp() throws Exception {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            body.append("This is the line ").append(i).append(" of the answer, with some text to look for separators.\n");
+        }
+        replyWithoutQuote = body.toString();
+        reply = replyWithoutQuote + "On Mon, Jan 8, 2024 at 10:15 AM John Doe <john@example.com> wrote:\n" + replyWithoutQuote;
+
+        final byte[] content = new byte[attachmentSize];
+        new Random(7).nextBytes(content);
+
+        final MimeBodyPart text = new MimeBodyPart();
+        text.setText(replyWithoutQuote);
+        final MimeBodyPart attachment = new MimeBodyPart();
+        attachment.setDataHandler(new DataHandler(new ByteArrayDataSource(content, "application/octet-stream")));
+        attachment.setFileName("attachment.bin");
+        attachment.setDisposition(MimeBodyPart.ATTACHMENT);
+
+        final MimeMultipart mp = new MimeMultipart();
+        mp.addBodyPart(text);
+        mp.addBodyPart(attachment);
+
+        // write and parse the message back, so parts have the sizes and encodings of a received email
+        final Session session = Session.getInstance(new Properties());
+        final MimeMessage message = new MimeMessage(session);
+        message.setContent(mp);
+        message.saveChanges();
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        message.writeTo(os);
+        multipart = (Multipart) new MimeMessage(session, new ByteArrayInputStream(os.toByteArray())).getContent();
+    }
+
+    @Benchmark
+    public String stripOutOriginalMessage() {
+        return EmailHelper.stripOutOriginalMessage(reply);
+    }
+
+    @Benchmark
+    public String stripOutOriginalMessageWithoutQuote() {
+        return EmailHelper.stripOutOriginalMessage(replyWithoutQuote);
+    }
+
+    @Benchmark
+    public Json convertMultipart() {
+        return EmailHelper.convertMultipart(multipart);
+    }
+}
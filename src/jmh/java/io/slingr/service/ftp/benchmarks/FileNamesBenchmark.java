@@ -0,0 +1,37 @@
+package io.slingr.service.ftp.benchmarks;
+
+import io.slingr.service.ftp.beans.FilesService;
+import io.slingr.service.ftp.beans.Processor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the handling of folders and names of the files, done for each file in the polls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileNamesBenchmark {
+
+    private final String[] folders = {"", "/", "input", "/input/", "  /input/sub/folder/  ", "/a/very/long/path/to/the/input/folder/"};
+    private final String[] fileNames = {"report.csv", "20240110101500-report.csv", "20240110101500-report-with-dashes.csv"};
+
+    @Benchmark
+    public void normalizeFolder(Blackhole bh) {
+        for (String folder : folders) {
+            bh.consume(Processor.normalizeFolder(folder));
+        }
+    }
+
+    @Benchmark
+    public void getOriginalFileName(Blackhole bh) {
+        for (String fileName : fileNames) {
+            bh.consume(FilesService.getOriginalFileName(fileName));
+        }
+    }
+}
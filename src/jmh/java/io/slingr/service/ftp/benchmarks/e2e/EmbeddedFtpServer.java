@@ -0,0 +1,76 @@
+package io.slingr.service.ftp.benchmarks.e2e;
+
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.ClearTextPasswordEncryptor;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * FTP server based on Apache FtpServer.
+ */
+public class EmbeddedFtpServer implements EmbeddedServer {
+
+    private static final int MAX_LOGINS = 100;
+
+    private final File root;
+    private int port;
+    private FtpServer server;
+
+    public EmbeddedFtpServer(File root) {
+        this.root = root;
+    }
+
+    @Override
+    public void start() throws Exception {
+        port = EmbeddedServer.freePort();
+
+        final FtpServerFactory serverFactory = new FtpServerFactory();
+        final ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(port);
+        serverFactory.addListener("default", listenerFactory.createListener());
+
+        final ConnectionConfigFactory connectionConfigFactory = new ConnectionConfigFactory();
+        connectionConfigFactory.setMaxLogins(MAX_LOGINS);
+        connectionConfigFactory.setMaxThreads(MAX_LOGINS);
+        serverFactory.setConnectionConfig(connectionConfigFactory.createConnectionConfig());
+
+        final PropertiesUserManagerFactory userManagerFactory = new PropertiesUserManagerFactory();
+        userManagerFactory.setPasswordEncryptor(new ClearTextPasswordEncryptor());
+        final UserManager userManager = userManagerFactory.createUserManager();
+        final BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(root.getAbsolutePath());
+        final List<Authority> authorities = Arrays.asList(new WritePermission(), new ConcurrentLoginPermission(MAX_LOGINS, MAX_LOGINS));
+        user.setAuthorities(authorities);
+        userManager.save(user);
+        serverFactory.setUserManager(userManager);
+
+        server = serverFactory.createServer();
+        server.start();
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+}
@@ -0,0 +1,25 @@
+package io.slingr.service.ftp.benchmarks.e2e;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * Server started in the same JVM of the harness, serving the given root folder to a single user.
+ */
+public interface EmbeddedServer {
+
+    String USERNAME = "bench";
+    String PASSWORD = "bench";
+
+    void start() throws Exception;
+
+    void stop();
+
+    int getPort();
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.slingr.service.ftp.benchmarks.e2e;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * SFTP server based on Apache MINA SSHD.
+ */
+public class EmbeddedSftpServer implements EmbeddedServer {
+
+    private final File root;
+    private int port;
+    private SshServer server;
+
+    public EmbeddedSftpServer(File root) {
+        this.root = root;
+    }
+
+    @Override
+    public void start() throws Exception {
+        port = EmbeddedServer.freePort();
+
+        // the host key is kept outside of the served folder; EC keys are supported by the JSch version of the service
+        final SimpleGeneratorHostKeyProvider keyProvider = new SimpleGeneratorHostKeyProvider(new File(root.getParentFile(), "hostkey.ser").toPath());
+        keyProvider.setAlgorithm("EC");
+        keyProvider.setKeySize(256);
+
+        server = SshServer.setUpDefaultServer();
+        server.setPort(port);
+        server.setKeyPairProvider(keyProvider);
+        server.setPasswordAuthenticator((username, password, session) -> USERNAME.equals(username) && PASSWORD.equals(password));
+        server.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+        server.setFileSystemFactory(new VirtualFileSystemFactory(root.toPath()));
+        server.start();
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            try {
+                server.stop(true);
+            } catch (IOException ex) {
+                // nothing to do, the harness is finishing
+            }
+            server = null;
+        }
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+}
@@ -0,0 +1,273 @@
+package io.slingr.service.ftp.benchmarks.e2e;
+
+import io.slingr.service.ftp.beans.Processor;
+import io.slingr.service.ftp.beans.ProcessorOptions;
+import io.slingr.services.services.AppLogs;
+import io.slingr.services.services.Events;
+import io.slingr.services.services.Files;
+import io.slingr.services.services.rest.DownloadedFile;
+import io.slingr.services.utils.Json;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.*;
+
+/**
+ * End to end throughput harness. It starts an embedded FTP or SFTP server, boots a {@link Processor} with
+ * stubbed app services and measures the throughput and latency of new files (inbound) and of uploads
+ * requested with {@link Processor#sendFile(String, String)} (outbound).
+ * <p>
+ * Arguments are given as 'key=value'. The keys of the harness are:
+ * <ul>
+ *     <li>protocol: 'ftp' or 'sftp' (default 'ftp')</li>
+ *     <li>mode: 'inbound', 'outbound' or 'both' (default 'both')</li>
+ *     <li>files: amount of files (default 200)</li>
+ *     <li>fileSize: size in bytes of each file (default 65536)</li>
+ *     <li>timeout: maximum seconds to wait for each mode (default 600)</li>
+ *     <li>resultFile: path of a file where the results are stored as JSON (optional)</li>
+ * </ul>
+ * Any other key is passed as a configuration field of the service, like 'maxFilesPerPoll=100',
+ * 'concurrency=4' or 'persistentConnections=enabled'.
+ */
+public class ThroughputHarness {
+
+    private static final String NAME = "bench";
+    private static final String INPUT_FOLDER = "input";
+    private static final String ARCHIVE_FOLDER = "archive";
+    private static final String OUTPUT_FOLDER = "output";
+    private static final List<String> HARNESS_KEYS = Arrays.asList("protocol", "mode", "files", "fileSize", "timeout", "resultFile");
+
+    private final String protocol;
+    private final String mode;
+    private final int files;
+    private final int fileSize;
+    private final long timeout;
+    private final String resultFile;
+    private final Json configuration = Json.map()
+            .set("maxFilesPerPoll", "100")
+            .set("adaptivePolling", "enabled");
+
+    private final Map<String, Long> dropped = new ConcurrentHashMap<>();
+    private final List<Long> inboundLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong inboundBytes = new AtomicLong(0);
+    private final CountDownLatch inboundEvents;
+    private final byte[] content;
+
+    private File root;
+    private EmbeddedServer server;
+    private Processor processor;
+
+    private ThroughputHarness(Map<String, String> arguments) {
+        this.protocol = arguments.getOrDefault("protocol", "ftp");
+        this.mode = arguments.getOrDefault("mode", "both");
+        this.files = Integer.parseInt(arguments.getOrDefault("files", "200"));
+        this.fileSize = Integer.parseInt(arguments.getOrDefault("fileSize", "65536"));
+        this.timeout = Long.parseLong(arguments.getOrDefault("timeout", "600"));
+        this.resultFile = arguments.get("resultFile");
+        for (Map.Entry<String, String> argument : arguments.entrySet()) {
+            if (!HARNESS_KEYS.contains(argument.getKey())) {
+                configuration.set(argument.getKey(), argument.getValue());
+            }
+        }
+        this.inboundEvents = new CountDownLatch(files);
+        this.content = new byte[fileSize];
+        new Random(7).nextBytes(content);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> arguments = new LinkedHashMap<>();
+        for (String arg : args) {
+            final String[] parts = arg.split("=", 2);
+            if (parts.length == 2 && StringUtils.isNotBlank(parts[0])) {
+                arguments.put(parts[0].trim(), parts[1].trim());
+            }
+        }
+        final Json result = new ThroughputHarness(arguments).run();
+        System.out.println(result.toPrettyString());
+        System.exit(0);
+    }
+
+    private Json run() throws Exception {
+        root = java.nio.file.Files.createTempDirectory("ftp-harness").toFile();
+        final File served = new File(root, "served");
+        FileUtils.forceMkdir(new File(served, INPUT_FOLDER));
+        FileUtils.forceMkdir(new File(served, ARCHIVE_FOLDER));
+        FileUtils.forceMkdir(new File(served, OUTPUT_FOLDER));
+
+        server = "sftp".equals(protocol) ? new EmbeddedSftpServer(served) : new EmbeddedFtpServer(served);
+        server.start();
+
+        final Json result = Json.map()
+                .set("protocol", protocol)
+                .set("files", files)
+                .set("fileSize", fileSize)
+                .set("configuration", configuration);
+        try {
+            startProcessor();
+            if (!"outbound".equals(mode)) {
+                result.set("inbound", runInbound(served));
+            }
+            if (!"inbound".equals(mode)) {
+                result.set("outbound", runOutbound(served));
+            }
+            result.set("metrics", processor.getMetrics().toJson());
+        } finally {
+            if (processor != null) {
+                processor.stop();
+            }
+            server.stop();
+            FileUtils.deleteQuietly(root);
+        }
+        if (StringUtils.isNotBlank(resultFile)) {
+            FileUtils.writeStringToFile(new File(resultFile), result.toPrettyString(), StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    private void startProcessor() throws Exception {
+        processor = new Processor(mock(AppLogs.class), stubEvents(), stubFiles(), NAME, true,
+                protocol, "localhost", String.valueOf(server.getPort()), EmbeddedServer.USERNAME, EmbeddedServer.PASSWORD,
+                "", INPUT_FOLDER, ARCHIVE_FOLDER, "none", false, OUTPUT_FOLDER,
+                ProcessorOptions.fromConfiguration(configuration));
+
+        // start blocks until the processor is stopped
+        final Thread thread = new Thread(processor::start, "ftp-harness-processor");
+        thread.setDaemon(true);
+        thread.start();
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (!processor.isStarted()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("The processor did not start");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private Json runInbound(File served) throws Exception {
+        final File staging = new File(root, "staging");
+        FileUtils.forceMkdir(staging);
+        final File input = new File(served, INPUT_FOLDER);
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < files; i++) {
+            // file names can't have dashes, the part before the first one is removed when archived
+            final String fileName = String.format("file%06d.dat", i);
+            final File tmp = new File(staging, fileName);
+            FileUtils.writeByteArrayToFile(tmp, content);
+            dropped.put(fileName, System.nanoTime());
+            java.nio.file.Files.move(tmp.toPath(), new File(input, fileName).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        final boolean completed = inboundEvents.await(timeout, TimeUnit.SECONDS);
+        final long elapsed = System.nanoTime() - start;
+        return report(files - (int) inboundEvents.getCount(), inboundBytes.get(), elapsed, inboundLatencies, completed)
+                .set("latency", "time from the file dropped in the input folder until its event was sent");
+    }
+
+    private Json runOutbound(File served) throws Exception {
+        final int workers = Math.max(1, ProcessorOptions.fromConfiguration(configuration).getUploadConcurrency());
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        final List<Future<?>> uploads = new ArrayList<>();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < files; i++) {
+            final String fileId = String.format("out%06d", i);
+            uploads.add(executor.submit(() -> {
+                final long requested = System.nanoTime();
+                processor.sendFile(fileId, "batch");
+                latencies.add(System.nanoTime() - requested);
+            }));
+        }
+        boolean completed = true;
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        for (Future<?> upload : uploads) {
+            try {
+                upload.get(Math.max(1, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) {
+                completed = false;
+                break;
+            } catch (ExecutionException ex) {
+                completed = false;
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        executor.shutdownNow();
+
+        final File[] stored = new File(served, OUTPUT_FOLDER + "/batch").listFiles();
+        final int storedFiles = stored != null ? stored.length : 0;
+        return report(storedFiles, (long) storedFiles * fileSize, elapsed, latencies, completed)
+                .set("latency", "time from the upload requested until the file was stored on the server");
+    }
+
+    private Json report(int processed, long bytes, long elapsedNanos, List<Long> latencies, boolean completed) {
+        final double seconds = elapsedNanos / 1e9;
+        final List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        Collections.sort(sorted);
+        return Json.map()
+                .set("completed", completed)
+                .set("files", processed)
+                .set("seconds", seconds)
+                .set("filesPerSecond", processed / seconds)
+                .set("bytesPerSecond", bytes / seconds)
+                .set("latencyP50Ms", percentile(sorted, 50))
+                .set("latencyP99Ms", percentile(sorted, 99))
+                .set("latencyMaxMs", percentile(sorted, 100));
+    }
+
+    private static double percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1e6;
+    }
+
+    private Events stubEvents() {
+        final Events events = mock(Events.class);
+        doAnswer(invocation -> {
+            final Json body = invocation.getArgument(1);
+            final Long droppedAt = body != null ? dropped.remove(body.string("fileName")) : null;
+            if (droppedAt != null) {
+                inboundLatencies.add(System.nanoTime() - droppedAt);
+                inboundEvents.countDown();
+            }
+            return null;
+        }).when(events).send(anyString(), nullable(Json.class));
+        return events;
+    }
+
+    private Files stubFiles() {
+        final Files files = mock(Files.class);
+        when(files.upload(nullable(String.class), nullable(InputStream.class), nullable(String.class))).thenAnswer(invocation -> {
+            final InputStream is = invocation.getArgument(1);
+            inboundBytes.addAndGet(IOUtils.consume(is));
+            return Json.map()
+                    .set("fileId", UUID.randomUUID().toString())
+                    .set("fileName", invocation.getArgument(0))
+                    .set("contentType", invocation.getArgument(2));
+        });
+        when(files.metadata(anyString())).thenAnswer(invocation -> Json.map()
+                .set("fileName", invocation.getArgument(0) + ".dat"));
+        when(files.download(anyString())).thenAnswer(invocation -> {
+            final DownloadedFile file = mock(DownloadedFile.class);
+            when(file.file()).thenReturn(new ByteArrayInputStream(content));
+            return file;
+        });
+        return files;
+    }
+}
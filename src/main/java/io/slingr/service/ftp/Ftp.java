@@ -1,6 +1,7 @@
 package io.slingr.service.ftp;
 
 import io.slingr.service.ftp.beans.Processor;
+import io.slingr.service.ftp.beans.ProcessorOptions;
 import io.slingr.services.Service;
 import io.slingr.services.exceptions.ErrorCode;
 import io.slingr.services.exceptions.ServiceException;
@@ -45,7 +46,8 @@ public class Ftp extends Service {
                     configuration.string("inputFolder") != null ? configuration.string("inputFolder") : "",
                     configuration.string("archiveFolder"), configuration.string("archiveGrouping"),
                     configuration.string("recursive").equals("enabled"),
-                    configuration.string("outputFolder") != null ? configuration.string("outputFolder") : "");
+                    configuration.string("outputFolder") != null ? configuration.string("outputFolder") : "",
+                    ProcessorOptions.fromConfiguration(configuration));
             processor.start();
         } else {
             stopProcessor();
@@ -77,4 +79,43 @@ public class Ftp extends Service {
             throw ServiceException.permanent(ErrorCode.GENERAL, String.format("An exception happened in the service: %s", ex.getMessage()), ex);
         }
     }
+
+    @ServiceFunction(name = "uploadFiles")
+    public Json uploadFiles(FunctionRequest request) {
+        try {
+            final Json body = request.getJsonParams();
+            return processor.sendFiles(body.jsons("files"));
+        } catch (ServiceException ex){
+            throw ex;
+        } catch (Exception ex){
+            throw ServiceException.permanent(ErrorCode.GENERAL, String.format("An exception happened in the service: %s", ex.getMessage()), ex);
+        }
+    }
+
+    @ServiceFunction(name = "uploadFileAsync")
+    public Json uploadFileAsync(FunctionRequest request) {
+        try {
+            final Json body = request.getJsonParams();
+            final String jobId = processor.sendFileAsync(body.string("fileId"), body.string("folder"));
+            return Json.map().set("jobId", jobId);
+        } catch (ServiceException ex){
+            throw ex;
+        } catch (Exception ex){
+            throw ServiceException.permanent(ErrorCode.GENERAL, String.format("An exception happened in the service: %s", ex.getMessage()), ex);
+        }
+    }
+
+    @ServiceFunction(name = "getMetrics")
+    public Json getMetrics(FunctionRequest request) {
+        final Json body = request.getJsonParams();
+        if(processor == null){
+            throw ServiceException.permanent(ErrorCode.GENERAL, "The service is not started");
+        }
+        if(body != null && "prometheus".equals(body.string("format"))){
+            return Json.map()
+                    .set("contentType", "text/plain; version=0.0.4")
+                    .set("body", processor.getMetrics().toPrometheus());
+        }
+        return processor.getMetrics().toJson();
+    }
 }
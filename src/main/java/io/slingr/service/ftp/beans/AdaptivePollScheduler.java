@@ -0,0 +1,148 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Consumer;
+import org.apache.camel.spi.ScheduledPollConsumerScheduler;
+import org.apache.camel.support.ServiceSupport;
+import org.quartz.CronExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scheduler of the polls of the input folder that adapts the delay between polls to the activity.
+ * <p>
+ * While polls find files the base delay is used. Each poll without files doubles the delay, up to the
+ * maximum one. Optionally, a cron expression indicates the minutes when polls are allowed; out of them
+ * the next poll is scheduled to the next allowed minute.
+ */
+public class AdaptivePollScheduler extends ServiceSupport implements ScheduledPollConsumerScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePollScheduler.class);
+
+    private static final long INITIAL_DELAY = 1000;
+
+    private final long baseDelay;
+    private final long maxDelay;
+    private final CronExpression window;
+    private final AtomicBoolean filesFound = new AtomicBoolean(false);
+
+    private CamelContext camelContext;
+    private Consumer consumer;
+    private Runnable task;
+    private ScheduledExecutorService executor;
+    private volatile ScheduledFuture<?> future;
+    private volatile long currentDelay;
+
+    public AdaptivePollScheduler(long baseDelay, long maxDelay, CronExpression window) {
+        this.baseDelay = baseDelay;
+        this.maxDelay = Math.max(baseDelay, maxDelay);
+        this.window = window;
+        this.currentDelay = baseDelay;
+    }
+
+    /**
+     * Registers the result of a poll, so the delay until the next one can be adapted.
+     */
+    public void pollCompleted(int polledFiles) {
+        if (polledFiles > 0) {
+            filesFound.set(true);
+        }
+    }
+
+    @Override
+    public void onInit(Consumer consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void scheduleTask(Runnable task) {
+        this.task = task;
+    }
+
+    @Override
+    public void unscheduleTask() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    @Override
+    public void startScheduler() {
+        if (future == null && executor != null) {
+            schedule(INITIAL_DELAY);
+        }
+    }
+
+    @Override
+    public boolean isSchedulerStarted() {
+        return future != null;
+    }
+
+    @Override
+    public void setCamelContext(CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        if (executor == null) {
+            executor = camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(consumer, "ftp-poll");
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        unscheduleTask();
+    }
+
+    @Override
+    protected void doShutdown() throws Exception {
+        if (executor != null) {
+            camelContext.getExecutorServiceManager().shutdown(executor);
+            executor = null;
+        }
+    }
+
+    private void schedule(long delay) {
+        future = executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        if (!isRunAllowed()) {
+            return;
+        }
+        try {
+            final Date now = new Date();
+            if (window != null && !window.isSatisfiedBy(new Date(now.getTime() - now.getTime() % 60000))) {
+                final Date next = window.getNextValidTimeAfter(now);
+                if (next != null) {
+                    logger.debug(String.format("Out of the polling window, next poll at [%s]", next));
+                    schedule(next.getTime() - now.getTime());
+                    return;
+                }
+            }
+            task.run();
+            if (filesFound.getAndSet(false)) {
+                currentDelay = baseDelay;
+            } else {
+                currentDelay = Math.min(currentDelay * 2, maxDelay);
+            }
+        } catch (Throwable th) {
+            logger.warn(String.format("Error when polling the input folder: %s", th.getMessage()), th);
+        }
+        if (isRunAllowed()) {
+            schedule(currentDelay);
+        }
+    }
+}
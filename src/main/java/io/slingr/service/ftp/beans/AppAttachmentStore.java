@@ -0,0 +1,40 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.service.ftp.utils.AttachmentStore;
+import io.slingr.services.services.Files;
+import io.slingr.services.utils.Json;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Uploads the attachments to the app while they are read, so the Json of the email only has the id of the
+ * file instead of its content.
+ */
+public class AppAttachmentStore implements AttachmentStore {
+    private static final Logger logger = LoggerFactory.getLogger(AppAttachmentStore.class);
+
+    private static final String DEFAULT_FILE_NAME = "attachment";
+
+    private final Files files;
+
+    public AppAttachmentStore(Files files) {
+        this.files = files;
+    }
+
+    @Override
+    public Json store(String fileName, String contentType, InputStream content) throws IOException {
+        final String name = StringUtils.isNotBlank(fileName) ? fileName : DEFAULT_FILE_NAME;
+        try {
+            final Json file = files.upload(name, new CloseShieldInputStream(content), contentType);
+            logger.info(String.format("Attachment [%s] was uploaded to app", name));
+            return file;
+        } catch (Exception ex) {
+            throw new IOException(String.format("It is not possible to upload the attachment [%s] to app: %s", name, ex.getMessage()), ex);
+        }
+    }
+}
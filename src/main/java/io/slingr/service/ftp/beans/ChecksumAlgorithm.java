@@ -0,0 +1,59 @@
+package io.slingr.service.ftp.beans;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Checksum;
+
+/**
+ * Algorithms of the checksums computed while files are transferred.
+ */
+public enum ChecksumAlgorithm {
+    /** checksums are not computed */
+    NONE("none", null),
+    /** CRC-32C, the cheapest one; no FTP server command computes it */
+    CRC32C("crc32c", null),
+    /** MD5, verified with the HASH or XMD5 commands */
+    MD5("md5", "MD5"),
+    /** SHA-256, verified with the HASH or XSHA256 commands */
+    SHA256("sha-256", "SHA-256");
+
+    private final String code;
+    private final String digestName;
+
+    ChecksumAlgorithm(String code, String digestName) {
+        this.code = code;
+        this.digestName = digestName;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Name of the algorithm for the JDK and for the HASH command of the FTP servers.
+     */
+    public String getDigestName() {
+        return digestName;
+    }
+
+    MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(digestName);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(String.format("Algorithm [%s] is not available", digestName), ex);
+        }
+    }
+
+    Checksum newChecksum() {
+        return new java.util.zip.CRC32C();
+    }
+
+    public static ChecksumAlgorithm fromCode(String code) {
+        for (ChecksumAlgorithm value : values()) {
+            if (value.code.equalsIgnoreCase(code)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
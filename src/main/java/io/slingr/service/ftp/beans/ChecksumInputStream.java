@@ -0,0 +1,123 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.services.utils.Json;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * Computes the checksum of the bytes while they are read, so the content doesn't need to be read again.
+ * Skipped bytes are read too, as they are part of the checksum.
+ */
+public class ChecksumInputStream extends FilterInputStream {
+
+    private final ChecksumAlgorithm algorithm;
+    private final MessageDigest digest;
+    private final Checksum checksum;
+    private final byte[] skipBuffer = new byte[8192];
+
+    public ChecksumInputStream(InputStream in, ChecksumAlgorithm algorithm) {
+        super(in);
+        this.algorithm = algorithm;
+        if (algorithm == ChecksumAlgorithm.CRC32C) {
+            this.digest = null;
+            this.checksum = algorithm.newChecksum();
+        } else {
+            this.digest = algorithm.newDigest();
+            this.checksum = null;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = in.read();
+        if (b != -1) {
+            update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        final int read = in.read(b, off, len);
+        if (read > 0) {
+            update(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            final int read = read(skipBuffer, 0, (int) Math.min(skipBuffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // not supported, the bytes would be counted twice
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Reset is not supported");
+    }
+
+    private void update(byte[] b, int off, int len) {
+        if (digest != null) {
+            digest.update(b, off, len);
+        } else {
+            checksum.update(b, off, len);
+        }
+    }
+
+    public ChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Checksum of the bytes read so far, in lower case hexadecimal.
+     */
+    public String getValue() {
+        if (digest != null) {
+            try {
+                // the digest is cloned so the value can be taken more than once
+                return toHex(((MessageDigest) digest.clone()).digest());
+            } catch (CloneNotSupportedException ex) {
+                return toHex(digest.digest());
+            }
+        }
+        return String.format("%08x", checksum.getValue());
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checksum and algorithm, in the format used in the events and results.
+     */
+    public Json toJson() {
+        return Json.map()
+                .set("algorithm", algorithm.getCode())
+                .set("value", getValue());
+    }
+}
@@ -0,0 +1,69 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.services.exceptions.ErrorCode;
+import io.slingr.services.exceptions.ServiceException;
+import io.slingr.services.utils.Json;
+import org.apache.camel.Handler;
+import org.apache.camel.Headers;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Compares the checksum computed while a file was stored with the one the server computes for the stored
+ * file. When they don't match the upload fails, so it is retried.
+ */
+public class ChecksumVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumVerifier.class);
+
+    public static final String CHECKSUM_VERIFIER_METHOD_VERIFY = "verify";
+
+    private final RemoteClientPool pool;
+    private final ChecksumAlgorithm algorithm;
+    private volatile boolean supported = true;
+
+    public ChecksumVerifier(RemoteClientPool pool, ChecksumAlgorithm algorithm) {
+        this.pool = pool;
+        this.algorithm = algorithm;
+    }
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void verify(@Headers Map<String, Object> headers) {
+        final Object checksum = headers.get(FilesService.HEADER_CHECKSUM);
+        final String path = (String) headers.get(FilesService.HEADER_FILE_PATH);
+        if (!supported || !(checksum instanceof Json) || StringUtils.isBlank(path)) {
+            return;
+        }
+        final String expected = ((Json) checksum).string("value");
+        final String remote;
+        try {
+            remote = pool.execute(client -> pool.getRemoteClient().checksum(client, path, algorithm));
+        } catch (IOException ex) {
+            // the file was stored, so it is not uploaded again only because it couldn't be checked
+            logger.warn(String.format("Checksum of file [%s] could not be verified: %s", path, ex.getMessage()));
+            return;
+        }
+        if (remote == null) {
+            supported = false;
+            logger.warn(String.format("Server doesn't compute [%s] checksums, uploads will not be verified", algorithm.getCode()));
+            return;
+        }
+        if (!remote.equalsIgnoreCase(expected)) {
+            // the stored file is wrong, so the next attempt has to start from the beginning
+            try {
+                pool.execute(client -> {
+                    pool.getRemoteClient().delete(client, path);
+                    return null;
+                });
+            } catch (IOException ex) {
+                // nothing to do, the file is overwritten by the next attempt
+            }
+            throw ServiceException.permanent(ErrorCode.CLIENT, String.format("Checksum of file [%s] on server [%s] doesn't match the uploaded content [%s]", path, remote, expected));
+        }
+        ((Json) checksum).set("verified", true);
+        logger.info(String.format("Checksum of file [%s] was verified", path));
+    }
+}
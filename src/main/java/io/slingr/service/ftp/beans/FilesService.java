@@ -2,6 +2,7 @@ package io.slingr.service.ftp.beans;
 
 import io.slingr.services.exceptions.ServiceException;
 import io.slingr.services.exceptions.ErrorCode;
+import io.slingr.service.ftp.utils.ContentTypes;
 import io.slingr.service.ftp.utils.EmailHelper;
 import io.slingr.services.services.AppLogs;
 import io.slingr.services.services.Files;
@@ -9,12 +10,25 @@ import io.slingr.services.services.rest.DownloadedFile;
 import io.slingr.services.utils.FilesUtils;
 import io.slingr.services.utils.Json;
 import org.apache.camel.*;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -28,15 +42,33 @@ public class FilesService {
     public static final String HEADER_INTERNAL_FOLDER = "FTP_INTERNAL_FOLDER";
     public static final String HEADER_FILE_PATH = "FTP_FILE_PATH";
     public static final String HEADER_LOCAL_FILE_PATH = "LOCAL_FILE_PATH";
+    public static final String HEADER_FILE_ID = "FTP_FILE_ID";
     public static final String HEADER_RETRIES = "UPLOAD_RETRIES";
     public static final String HEADER_NOT_EMPTY = "NOT_EMPTY_FILE";
+    public static final String HEADER_CHECKSUM = "FTP_CHECKSUM";
+    public static final String HEADER_RESUME_BEFORE = "FTP_RESUME_BEFORE";
+    public static final String HEADER_RESUME_MARK = "FTP_RESUME_MARK";
+    public static final String HEADER_RESUME_OFFSET = "FTP_RESUME_OFFSET";
+    public static final String HEADER_SEGMENTED = "FTP_SEGMENTED";
+    public static final String HEADER_RECORDS_FILE_PATH = "FTP_RECORDS_FILE_PATH";
+
+    public static final int UPLOAD_ATTEMPTS = 3;
+
+    private static final String PROPERTY_STORE_STARTED = "FTP_STORE_STARTED";
+    private static final String PROPERTY_STORE_CONTENT = "FTP_STORE_CONTENT";
+    private static final String PROPERTY_STORE_CHECKSUM = "FTP_STORE_CHECKSUM";
 
     public static final String FILES_SERVICE_METHOD_NEW_FILE = "newFile";
     public static final String FILES_SERVICE_METHOD_DOWNLOAD_FILE = "downloadFile";
     public static final String FILES_SERVICE_METHOD_UPLOAD_FILE = "uploadFile";
+    public static final String FILES_SERVICE_METHOD_STORED = "stored";
+    public static final String FILES_SERVICE_METHOD_FAILED = "failed";
+    public static final String FILES_SERVICE_METHOD_CLEAN_UP = "cleanUp";
     public static final String FILES_SERVICE_NO_FILES = "noFiles";
 
     private static final int PERIODS_BETWEEN_NOT_FILE_MESSAGES = 25;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int UPLOAD_MEMORY_BUFFER_SIZE = 1024 * 1024;
 
     private final Files files;
     private final AppLogs appLogs;
@@ -44,20 +76,29 @@ public class FilesService {
     private final String inputFolder;
     private final String archivedOutputFolder;
     private final String parentOutputFolder;
+    private final ProcessorOptions options;
+    private final Metrics metrics;
+    private final RemoteClientPool remoteClientPool;
+    private final SegmentedUploader segmentedUploader;
     private final AtomicInteger noFilesCounter = new AtomicInteger(0);
     private final AtomicLong lastSync = new AtomicLong(System.currentTimeMillis());
 
-    public FilesService(Files files, AppLogs appLogs, boolean recursive, String inputFolder, String archivedOutputFolder, String parentOutputFolder) {
+    public FilesService(Files files, AppLogs appLogs, boolean recursive, String inputFolder, String archivedOutputFolder, String parentOutputFolder,
+                        ProcessorOptions options, Metrics metrics, RemoteClientPool remoteClientPool, SegmentedUploader segmentedUploader) {
         this.files = files;
         this.appLogs = appLogs;
         this.recursive = recursive;
         this.inputFolder = inputFolder;
         this.archivedOutputFolder = archivedOutputFolder;
         this.parentOutputFolder = parentOutputFolder;
+        this.options = options;
+        this.metrics = metrics;
+        this.remoteClientPool = remoteClientPool;
+        this.segmentedUploader = segmentedUploader;
     }
 
     @Handler @SuppressWarnings("unused") // used on Service routes
-    public Json newFile(@Body InputStream is, @Headers Map<String, Object> headers){
+    public Json newFile(@Body InputStream is, @Headers Map<String, Object> headers, Exchange exchange){
         lastSync.set(System.currentTimeMillis());
         if(is == null){
             headers.put(HEADER_NOT_EMPTY, false);
@@ -67,27 +108,49 @@ public class FilesService {
 
         try {
             final String originalFileName = getOriginalFileName((String) headers.get(Exchange.FILE_NAME_ONLY));
-            final String contentType = EmailHelper.getContentType((String) headers.get(Exchange.FILE_CONTENT_TYPE), originalFileName);
-
-            String path = "";
-            if (recursive) {
-                path = (String) headers.get(Exchange.FILE_PARENT);
-                if (path.matches(String.format("^/%s/.*%s.*", archivedOutputFolder, inputFolder))) {
-                    path = path.substring(path.indexOf(inputFolder) + inputFolder.length());
-                }
-                if (path.startsWith("/")) {
-                    path = path.substring(1);
+            InputStream source = is;
+            String contentType = (String) headers.get(Exchange.FILE_CONTENT_TYPE);
+            if (StringUtils.isBlank(contentType)) {
+                contentType = ContentTypes.fromFileName(originalFileName);
+                if (contentType == null) {
+                    // unknown extension, so the type is detected from the first bytes of the file
+                    if (!source.markSupported()) {
+                        source = new BufferedInputStream(source, STREAM_BUFFER_SIZE);
+                    }
+                    contentType = EmailHelper.getContentType(ContentTypes.fromContent(source), originalFileName);
                 }
             }
 
+            final String path = recursive ? relativeFolder((String) headers.get(Exchange.FILE_PARENT), archivedOutputFolder, inputFolder) : "";
+
             logger.info(String.format("New file on FTP [%s] - content type [%s] - path [%s]", originalFileName, contentType, path));
 
             logger.info(String.format("Starting uploading file [%s] to app runtime", originalFileName));
-            final Json file = files.upload(originalFileName, is, contentType);
+            // when streaming, the remote data channel is read through a bounded buffer as the app consumes the upload
+            final CountingInputStream content = new CountingInputStream(options.isStreamDownloads() && !(source instanceof BufferedInputStream)
+                    ? new BufferedInputStream(source, STREAM_BUFFER_SIZE) : source);
+            final OutputStream records = copyForRecords(exchange);
+            final InputStream uploaded = records != null ? new TeeInputStream(content, records) : content;
+            // the checksum is computed while the content goes to the app, without reading the file again
+            final ChecksumInputStream checksum = options.getChecksumAlgorithm() != ChecksumAlgorithm.NONE
+                    ? new ChecksumInputStream(uploaded, options.getChecksumAlgorithm()) : null;
+            final long start = System.nanoTime();
+            final Json file;
+            try {
+                file = files.upload(originalFileName, checksum != null ? checksum : uploaded, contentType);
+            } finally {
+                IOUtils.closeQuietly(records);
+            }
+            metrics.recordSince(Metrics.APP_UPLOAD_DURATION, start);
+            metrics.increment(Metrics.FILES_IN);
+            metrics.add(Metrics.BYTES_IN, content.getByteCount());
             logger.info(String.format("File [%s] was uploaded", originalFileName));
             if (StringUtils.isNotBlank(path)) {
                 file.set("filePath", path);
             }
+            if (checksum != null) {
+                file.set("checksum", checksum.toJson());
+            }
             return file;
         } catch (ServiceException ee){
             appLogs.error(ee.getMessage());
@@ -99,6 +162,28 @@ public class FilesService {
         }
     }
 
+    /**
+     * When downloads are streamed and files are split in records, the content is copied to a temporary file
+     * while it goes to the app, so the records are read from it instead of downloading the file back. The copy
+     * is deleted when the exchange is done, even if the event or the split fail.
+     *
+     * @return the stream of the copy, or null if files are not split or the content is already in a local file
+     */
+    private OutputStream copyForRecords(Exchange exchange) throws IOException {
+        if (!options.isStreamDownloads() || options.getRecordFormat() == RecordFormat.NONE) {
+            return null;
+        }
+        final File copy = File.createTempFile("ftp-records-", ".tmp");
+        exchange.addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange exchange) {
+                FileUtils.deleteQuietly(copy);
+            }
+        });
+        exchange.getIn().setHeader(HEADER_RECORDS_FILE_PATH, copy.getAbsolutePath());
+        return new FileOutputStream(copy);
+    }
+
     @Handler @SuppressWarnings("unused") // used on Service routes
     public void downloadFile(@Body Json body, @Headers Map<String, String> headers) {
         String fileId = body.string("fileId");
@@ -128,43 +213,300 @@ public class FilesService {
         if(StringUtils.isNotBlank(folder)){
             headers.put(HEADER_INTERNAL_FOLDER, folder);
             headers.put(HEADER_FILE_PATH, parentOutputFolder+folder+"/"+fileName);
+            // the producer creates the folder when the file name contains it
+            headers.put(Exchange.FILE_NAME, folder+"/"+fileName);
         }
         logger.info(String.format("File to upload [%s]", headers.getOrDefault(HEADER_FILE_PATH, "<empty>")));
+        headers.put(HEADER_FILE_ID, fileId);
+
+        if(options.isStreamUploads()){
+            // the file is downloaded from the app on each upload attempt, so no local copy is needed
+            return;
+        }
 
         // download the file from the service
+        final long start = System.nanoTime();
+        final DownloadedFile dwnFile = download(fileId, fileName);
+        File tmp = null;
+        boolean copied = false;
+        try {
+            tmp = FilesUtils.copyInputStreamToTemporaryFile(fileName, dwnFile.file());
+            metrics.recordSince(Metrics.APP_DOWNLOAD_DURATION, start);
+            if(tmp == null || !tmp.exists()){
+                final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("It is not possible to copy the file [%s] from application to service. The file will not be uploaded to ftp.", fileName));
+                logger.warn(re.getMessage());
+                throw re;
+            }
+            final long fileLength = tmp.length();
+            if(fileLength < 1){
+                final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("The copy of the file [%s] on service is empty. The file will not be uploaded to ftp.", fileName));
+                logger.warn(re.getMessage());
+                throw re;
+            }
+            headers.put(HEADER_LOCAL_FILE_PATH, tmp.getAbsolutePath());
+            copied = true;
+        } finally {
+            // the route only cleans up the copies that were handed to it
+            if(!copied && tmp != null){
+                FileUtils.deleteQuietly(tmp);
+            }
+        }
+    }
+
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void uploadFile(Exchange exchange, @Header(HEADER_LOCAL_FILE_PATH) String localFilePath, @Header(HEADER_FILE_ID) String fileId,
+                           @Header(HEADER_RETRIES) Integer retries) throws IOException {
+        final String fileName = exchange.getIn().getHeader(Exchange.FILE_NAME, String.class);
+        Object content = openContent(localFilePath, fileId, fileName);
+        long offset = 0;
+        // segments of a failed segmented upload may have been stored in any order, so it is never resumed
+        if(retries != null && retries < UPLOAD_ATTEMPTS && !exchange.getIn().getHeader(HEADER_SEGMENTED, false, Boolean.class)){
+            offset = resumeOffset(exchange, content);
+        }
+        if(offset == 0 && content instanceof File && segmentedUploader != null && segmentedUploader.accepts(((File) content).length())){
+            // big files are stored in segments that are read from the local copy at their offsets
+            exchange.getIn().setHeader(HEADER_SEGMENTED, true);
+            exchange.getIn().setHeader(HEADER_RESUME_OFFSET, 0L);
+            exchange.getIn().setBody(content);
+            exchange.setProperty(PROPERTY_STORE_CONTENT, content);
+            if(options.getChecksumAlgorithm() != ChecksumAlgorithm.NONE){
+                // the first segment is written from this stream, and the rest of it is read while the other segments are stored
+                final ChecksumInputStream checksum = new ChecksumInputStream(new FileInputStream((File) content), options.getChecksumAlgorithm());
+                exchange.getIn().setBody(checksum);
+                exchange.setProperty(PROPERTY_STORE_CHECKSUM, checksum);
+            }
+            exchange.setProperty(PROPERTY_STORE_STARTED, System.nanoTime());
+            return;
+        }
+        exchange.getIn().setHeader(HEADER_SEGMENTED, false);
+        rememberRemoteState(exchange);
+        if(offset > 0 && !prepareUpload(exchange, content, offset)){
+            // the bytes on the server are not the beginning of this file, so it is uploaded again from the beginning
+            if(content instanceof InputStream){
+                IOUtils.closeQuietly((InputStream) content);
+            }
+            content = openContent(localFilePath, fileId, fileName);
+            offset = 0;
+        }
+        if(offset == 0){
+            prepareUpload(exchange, content, 0);
+        }
+        exchange.setProperty(PROPERTY_STORE_STARTED, System.nanoTime());
+    }
+
+    private Object openContent(String localFilePath, String fileId, String fileName) throws IOException {
+        if(options.isStreamUploads()){
+            return new CountingInputStream(openUploadStream(fileId, fileName));
+        }
+        if(StringUtils.isBlank(localFilePath)){
+            final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("The copy of the file [%s] on service is invalid. The file will not be uploaded to ftp.", localFilePath));
+            logger.warn(re.getMessage());
+            throw re;
+        }
+        return new File(localFilePath);
+    }
+
+    /**
+     * Sets the content to store as the body, skipping the bytes already on the server.
+     *
+     * @return false if the bytes on the server are not the beginning of the content, so it can't be resumed
+     */
+    private boolean prepareUpload(Exchange exchange, Object content, long offset) throws IOException {
+        final String path = exchange.getIn().getHeader(HEADER_FILE_PATH, String.class);
+        Object body = content;
+        ChecksumInputStream checksum = null;
+        if(options.getChecksumAlgorithm() != ChecksumAlgorithm.NONE){
+            // the checksum is computed while the content is written to the server
+            final InputStream is = content instanceof File ? new FileInputStream((File) content) : (InputStream) content;
+            checksum = new ChecksumInputStream(is, options.getChecksumAlgorithm());
+            body = checksum;
+        }
+        if(offset > 0){
+            // the bytes already on the server are skipped, and read through the checksum so it covers the whole file
+            final InputStream is = body instanceof File ? new FileInputStream((File) body) : (InputStream) body;
+            final long skipped = IOUtils.skip(is, offset);
+            if(skipped < offset || (checksum != null && !matchesRemote(path, checksum))){
+                IOUtils.closeQuietly(is);
+                return false;
+            }
+            logger.info(String.format("Resuming upload of file [%s] from byte [%s]", path, offset));
+            body = is;
+        }
+        exchange.getIn().setHeader(HEADER_RESUME_OFFSET, offset);
+        exchange.getIn().setBody(body);
+        exchange.setProperty(PROPERTY_STORE_CONTENT, content);
+        if(checksum != null){
+            exchange.setProperty(PROPERTY_STORE_CHECKSUM, checksum);
+        }
+        return true;
+    }
+
+    /**
+     * Compares the checksum of the bytes read so far with the one of the file on the server, which holds
+     * the same amount of bytes. If the server can't compute it, the file is assumed to match.
+     */
+    private boolean matchesRemote(String path, ChecksumInputStream checksum) {
+        if(checksum.getAlgorithm().getDigestName() == null){
+            return true;
+        }
+        try {
+            final String remote = remoteClientPool.execute(client -> remoteClientPool.getRemoteClient().checksum(client, path, checksum.getAlgorithm()));
+            if(remote != null && !remote.equalsIgnoreCase(checksum.getValue())){
+                logger.info(String.format("The part of file [%s] on the server doesn't match the content, it can't be resumed", path));
+                return false;
+            }
+            return true;
+        } catch (IOException ex){
+            logger.info(String.format("The part of file [%s] on the server could not be checked: %s", path, ex.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Keeps the state of the file on the server before the first attempt, so a failed attempt that didn't
+     * write it doesn't resume from a file that belongs to someone else.
+     */
+    private void rememberRemoteState(Exchange exchange) {
+        if(remoteClientPool == null || !options.isResumeTransfers() || exchange.getIn().getHeader(HEADER_RESUME_BEFORE) != null){
+            return;
+        }
+        exchange.getIn().setHeader(HEADER_RESUME_BEFORE, remoteState(exchange.getIn().getHeader(HEADER_FILE_PATH, String.class)));
+    }
+
+    /**
+     * Keeps the state of the file on the server after a failed attempt, so the next one resumes it only if it
+     * was written by the attempt and it didn't change since then.
+     */
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void failed(@Headers Map<String, Object> headers) {
+        if(remoteClientPool == null || !options.isResumeTransfers() || Boolean.TRUE.equals(headers.get(HEADER_SEGMENTED))){
+            return;
+        }
+        headers.put(HEADER_RESUME_MARK, remoteState((String) headers.get(HEADER_FILE_PATH)));
+    }
+
+    /**
+     * State of the file on the server, or an empty string if it doesn't exist or it can't be checked.
+     */
+    private String remoteState(String path) {
+        if(StringUtils.isBlank(path)){
+            return "";
+        }
+        try {
+            return StringUtils.defaultString(remoteClientPool.execute(client -> remoteClientPool.getRemoteClient().state(client, path)));
+        } catch (IOException ex){
+            logger.info(String.format("The state of file [%s] on the server could not be checked: %s", path, ex.getMessage()));
+            return "";
+        }
+    }
+
+    /**
+     * Bytes of the file that a previous attempt stored on the server, or 0 if the upload has to start from the
+     * beginning. Only files written by the failed attempt and not modified since then are resumed.
+     */
+    private long resumeOffset(Exchange exchange, Object content) {
+        if(remoteClientPool == null || !options.isResumeTransfers()){
+            return 0;
+        }
+        final String path = exchange.getIn().getHeader(HEADER_FILE_PATH, String.class);
+        final String mark = exchange.getIn().getHeader(HEADER_RESUME_MARK, String.class);
+        if(StringUtils.isBlank(path) || StringUtils.isBlank(mark) || mark.equals(exchange.getIn().getHeader(HEADER_RESUME_BEFORE, String.class))){
+            // the failed attempt didn't write the file, so what is on the server is not part of this upload
+            return 0;
+        }
+        if(!mark.equals(remoteState(path))){
+            logger.info(String.format("The file [%s] on the server changed after the upload failed, it can't be resumed", path));
+            return 0;
+        }
+        final long size = RemoteClient.stateSize(mark);
+        if(content instanceof File && size >= ((File) content).length()){
+            return 0;
+        }
+        return size;
+    }
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void stored(Exchange exchange) {
+        final Long started = exchange.getProperty(PROPERTY_STORE_STARTED, Long.class);
+        if(started != null){
+            metrics.recordSince(Metrics.STORE_DURATION, started);
+        }
+        final Object content = exchange.getProperty(PROPERTY_STORE_CONTENT);
+        if(content instanceof CountingInputStream){
+            metrics.add(Metrics.BYTES_OUT, ((CountingInputStream) content).getByteCount());
+        } else if(content instanceof File){
+            metrics.add(Metrics.BYTES_OUT, ((File) content).length());
+        }
+        metrics.increment(Metrics.FILES_OUT);
+        exchange.removeProperty(PROPERTY_STORE_CONTENT);
+        final Object checksum = exchange.removeProperty(PROPERTY_STORE_CHECKSUM);
+        if(checksum instanceof ChecksumInputStream){
+            exchange.getIn().setHeader(HEADER_CHECKSUM, ((ChecksumInputStream) checksum).toJson());
+        }
+    }
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void cleanUp(@Header(HEADER_LOCAL_FILE_PATH) String localFilePath) {
+        if(StringUtils.isNotBlank(localFilePath)){
+            if(!FileUtils.deleteQuietly(new File(localFilePath))){
+                logger.info(String.format("The copy of the file [%s] on service could not be removed", localFilePath));
+            }
+        }
+    }
+
+    private DownloadedFile download(String fileId, String fileName) {
         final DownloadedFile dwnFile = files.download(fileId);
         if(dwnFile == null || dwnFile.file() == null){
             final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("It is not possible to download the file [%s] from application to service. The file will not be uploaded to ftp.", fileName));
             logger.warn(re.getMessage());
             throw re;
         }
-        final File tmp = FilesUtils.copyInputStreamToTemporaryFile(fileName, dwnFile.file());
-        if(tmp == null || !tmp.exists()){
-            final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("It is not possible to copy the file [%s] from application to service. The file will not be uploaded to ftp.", fileName));
+        return dwnFile;
+    }
+
+    /**
+     * Opens the content of the file in the app to be written straight to the server. Small files are
+     * completely read in memory; bigger ones keep the first bytes in memory and the rest is streamed.
+     */
+    private InputStream openUploadStream(String fileId, String fileName) throws IOException {
+        final long start = System.nanoTime();
+        final InputStream is = download(fileId, fileName).file();
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        IOUtils.copyLarge(is, head, 0, UPLOAD_MEMORY_BUFFER_SIZE + 1);
+        metrics.recordSince(Metrics.APP_DOWNLOAD_DURATION, start);
+        if(head.size() < 1){
+            IOUtils.closeQuietly(is);
+            final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("The file [%s] downloaded from app is empty. The file will not be uploaded to ftp.", fileName));
             logger.warn(re.getMessage());
             throw re;
         }
-        final long fileLength = tmp.length();
-        if(fileLength < 1){
-            final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("The copy of the file [%s] on service is empty. The file will not be uploaded to ftp.", fileName));
-            logger.warn(re.getMessage());
-            throw re;
+        if(head.size() <= UPLOAD_MEMORY_BUFFER_SIZE){
+            IOUtils.closeQuietly(is);
+            return new ByteArrayInputStream(head.toByteArray());
         }
-        headers.put(HEADER_LOCAL_FILE_PATH, tmp.getAbsolutePath());
+        return new SequenceInputStream(new ByteArrayInputStream(head.toByteArray()), is);
     }
 
-
-    @Handler @SuppressWarnings("unused") // used on Service routes
-    public void uploadFile(Exchange exchange, @Header(HEADER_LOCAL_FILE_PATH) String localFilePath) {
-        if(StringUtils.isBlank(localFilePath)){
-            final ServiceException re = ServiceException.permanent(ErrorCode.CLIENT, String.format("The copy of the file [%s] on service is invalid. The file will not be uploaded to ftp.", localFilePath));
-            logger.warn(re.getMessage());
-            throw re;
+    /**
+     * Folder of an archived file relative to the input folder, which is the folder it had in the input folder.
+     *
+     * @param parent parent folder of the archived file
+     * @param archivedOutputFolder archive folder, without the leading slash
+     * @param inputFolder input folder, without the leading slash
+     */
+    public static String relativeFolder(String parent, String archivedOutputFolder, String inputFolder) {
+        String path = parent;
+        if (path.matches(String.format("^/%s/.*%s.*", archivedOutputFolder, inputFolder))) {
+            path = path.substring(path.indexOf(inputFolder) + inputFolder.length());
+        }
+        if (path.startsWith("/")) {
+            path = path.substring(1);
         }
-        exchange.getIn().setBody(new File(localFilePath));
+        return path;
     }
 
-    private String getOriginalFileName(String fileName) {
+    public static String getOriginalFileName(String fileName) {
         int index = fileName.indexOf("-");
         if (index == -1) {
             return fileName;
@@ -0,0 +1,142 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.camel.component.file.AntPathMatcherGenericFileFilter;
+import org.apache.camel.component.file.GenericFile;
+import org.apache.camel.component.file.GenericFileFilter;
+import org.apache.camel.util.FileUtil;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filter applied to the listing of the input folder. When an index of the listings is available,
+ * directories that didn't change since the last poll are not listed again. Files are only accepted once
+ * the read lock says they are complete, using the information that came in the listing. Files that were
+ * already processed are skipped when that store is enabled.
+ * <p>
+ * Camel stops going through the listing once it has the maximum amount of files of a poll, so the files
+ * accepted in each poll are counted to know if the listing could have been cut before its end.
+ */
+public class InboundFileFilter<T> implements GenericFileFilter<T> {
+
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final ListingIndex listingIndex;
+    private final ProcessedFiles processedFiles;
+    private final AntPathMatcherGenericFileFilter<T> patternFilter;
+    private final ReadLock readLock;
+    private final long minAge;
+    private final int listingLimit;
+    private final AtomicLong pollCounter = new AtomicLong(0);
+    private final AtomicInteger accepted = new AtomicInteger(0);
+    private final Map<String, FileSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @param listingLimit amount of files after which the listing stops, or 0 if it is always complete
+     */
+    public InboundFileFilter(ListingIndex listingIndex, ProcessedFiles processedFiles, String filePattern, ReadLock readLock, long minAge,
+                             int listingLimit) {
+        this.listingIndex = listingIndex;
+        this.listingLimit = listingLimit;
+        this.processedFiles = processedFiles;
+        this.readLock = readLock;
+        this.minAge = minAge;
+        if (StringUtils.isNotBlank(filePattern)) {
+            this.patternFilter = new AntPathMatcherGenericFileFilter<>();
+            this.patternFilter.setIncludes(filePattern);
+            this.patternFilter.setCaseSensitive(false);
+        } else {
+            this.patternFilter = null;
+        }
+    }
+
+    @Override
+    public boolean accept(GenericFile<T> file) {
+        final String path = file.getRelativeFilePath();
+        if (file.isDirectory()) {
+            if (listingIndex == null) {
+                return true;
+            }
+            listingIndex.found(FileUtil.onlyPath(path), true);
+            return listingIndex.shouldList(path, file.getLastModified());
+        }
+        if (readLock == ReadLock.TEMP_FILE && file.getFileNameOnly().toLowerCase().endsWith(TEMP_FILE_EXTENSION)) {
+            // still being written
+            return false;
+        }
+        // only files that will be picked keep the directory from being skipped
+        if (listingIndex != null && (patternFilter == null || patternFilter.accept(file))) {
+            listingIndex.found(FileUtil.onlyPath(path), false);
+        }
+        if (processedFiles != null && processedFiles.contains(file)) {
+            return false;
+        }
+        final boolean complete;
+        if (readLock == ReadLock.MIN_AGE) {
+            complete = System.currentTimeMillis() - file.getLastModified() >= minAge;
+        } else if (readLock == ReadLock.STABLE) {
+            complete = isStable(path, file.getFileLength(), file.getLastModified());
+        } else {
+            complete = true;
+        }
+        if (complete && (patternFilter == null || patternFilter.accept(file))) {
+            accepted.incrementAndGet();
+            if (processedFiles != null) {
+                processedFiles.listed(file);
+            }
+        }
+        return complete;
+    }
+
+    private boolean isStable(String path, long length, long lastModified) {
+        final long poll = pollCounter.get();
+        final FileSnapshot previous = snapshots.get(path);
+        if (previous != null && previous.poll < poll && previous.length == length && previous.lastModified == lastModified) {
+            snapshots.remove(path);
+            return true;
+        }
+        snapshots.put(path, new FileSnapshot(length, lastModified, poll));
+        return false;
+    }
+
+    public void pollStarted() {
+        pollCounter.incrementAndGet();
+        accepted.set(0);
+    }
+
+    /**
+     * Indicates if the listing of the current poll could have been stopped before its end, because enough
+     * files were accepted to reach the limit of the poll.
+     */
+    public boolean isListingTruncated() {
+        return listingLimit > 0 && accepted.get() >= listingLimit;
+    }
+
+    /**
+     * Ends the current poll. When the listing was complete, files that were not seen on it are forgotten.
+     */
+    public void pollCompleted(boolean complete) {
+        if (listingIndex != null) {
+            listingIndex.pollCompleted(complete);
+        }
+        if (complete) {
+            final long poll = pollCounter.get();
+            snapshots.values().removeIf(snapshot -> snapshot.poll < poll);
+        }
+    }
+
+    private static class FileSnapshot {
+        private final long length;
+        private final long lastModified;
+        private final long poll;
+
+        private FileSnapshot(long length, long lastModified, long poll) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.poll = poll;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.camel.Consumer;
+import org.apache.camel.Endpoint;
+import org.apache.camel.impl.DefaultPollingConsumerPollStrategy;
+
+/**
+ * Poll strategy of the input folder consumer, used to track when each poll starts and ends.
+ */
+public class InboundPollStrategy extends DefaultPollingConsumerPollStrategy {
+
+    private final InboundFileFilter<?> fileFilter;
+    private final AdaptivePollScheduler pollScheduler;
+    private final Metrics metrics;
+    private volatile long pollStarted;
+
+    public InboundPollStrategy(InboundFileFilter<?> fileFilter, AdaptivePollScheduler pollScheduler, Metrics metrics) {
+        this.fileFilter = fileFilter;
+        this.pollScheduler = pollScheduler;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean begin(Consumer consumer, Endpoint endpoint) {
+        pollStarted = System.nanoTime();
+        fileFilter.pollStarted();
+        return super.begin(consumer, endpoint);
+    }
+
+    @Override
+    public void commit(Consumer consumer, Endpoint endpoint, int polledMessages) {
+        // the files processed are not enough to know it, as the listing goes on while files are not accepted
+        fileFilter.pollCompleted(!fileFilter.isListingTruncated());
+        if (pollScheduler != null) {
+            pollScheduler.pollCompleted(polledMessages);
+        }
+        metrics.increment(Metrics.POLLS);
+        metrics.record(Metrics.POLL_FILES, polledMessages);
+        metrics.recordSince(Metrics.POLL_DURATION, pollStarted);
+        super.commit(consumer, endpoint, polledMessages);
+    }
+
+    @Override
+    public boolean rollback(Consumer consumer, Endpoint endpoint, int retryCounter, Exception cause) throws Exception {
+        fileFilter.pollCompleted(false);
+        return super.rollback(consumer, endpoint, retryCounter, cause);
+    }
+}
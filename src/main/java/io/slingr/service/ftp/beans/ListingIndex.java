@@ -0,0 +1,166 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the directories found under the input folder, persisted in a local file so it survives restarts.
+ * <p>
+ * It keeps the modification time of each directory as it came in the listing of its parent, together with
+ * what was found inside of it the last time it was listed. A directory doesn't need to be listed again when
+ * it has no sub-directories, no files were found in it and its modification time didn't change since it
+ * was considered settled. A directory is settled once the same modification time was seen for longer than
+ * the precision of the listings, so files added in the same minute of the last change are not missed.
+ */
+public class ListingIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ListingIndex.class);
+
+    private static final long SETTLE_TIME = 2 * 60 * 1000; // 2 minutes
+
+    private final File storeFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> pollEntries = new ConcurrentHashMap<>();
+
+    public ListingIndex(File storeFile) {
+        this.storeFile = storeFile;
+    }
+
+    /**
+     * Indicates if the directory has to be listed in the current poll. It must be called for every directory
+     * found in the listing of its parent.
+     *
+     * @param path relative path of the directory
+     * @param lastModified modification time of the directory from the listing
+     * @return true if the directory has to be listed
+     */
+    public boolean shouldList(String path, long lastModified) {
+        final long now = System.currentTimeMillis();
+        final Entry previous = entries.get(path);
+        if (previous != null && previous.lastModified == lastModified) {
+            final boolean settled = now - previous.firstSeen >= SETTLE_TIME;
+            if (settled && !previous.hasFiles && !previous.hasDirectories) {
+                // nothing changed inside of it, keep what we know
+                pollEntries.put(path, previous);
+                return false;
+            }
+            pollEntries.put(path, new Entry(lastModified, previous.firstSeen));
+        } else {
+            pollEntries.put(path, new Entry(lastModified, now));
+        }
+        return true;
+    }
+
+    /**
+     * Registers an element found in the listing of the given directory in the current poll.
+     */
+    public void found(String parentPath, boolean directory) {
+        final Entry parent = pollEntries.get(parentPath != null ? parentPath : "");
+        if (parent != null) {
+            if (directory) {
+                parent.hasDirectories = true;
+            } else {
+                parent.hasFiles = true;
+            }
+        }
+    }
+
+    /**
+     * Ends the current poll. When the listing was complete, what was found replaces the index, which also
+     * drops directories that don't exist anymore. Otherwise, the changes of the poll are discarded.
+     */
+    public void pollCompleted(boolean complete) {
+        if (complete) {
+            entries.clear();
+            entries.putAll(pollEntries);
+            save();
+        }
+        pollEntries.clear();
+    }
+
+    public void load() {
+        if (storeFile == null || !storeFile.exists()) {
+            return;
+        }
+        final Properties properties = new Properties();
+        try (InputStream is = new FileInputStream(storeFile)) {
+            properties.load(is);
+            for (String path : properties.stringPropertyNames()) {
+                final Entry entry = Entry.parse(properties.getProperty(path));
+                if (entry != null) {
+                    entries.put(path, entry);
+                }
+            }
+            logger.info(String.format("Listing index loaded with [%s] directories from [%s]", entries.size(), storeFile));
+        } catch (Exception ex) {
+            logger.warn(String.format("Listing index could not be loaded from [%s]. A full scan will be done", storeFile), ex);
+            entries.clear();
+        }
+    }
+
+    private void save() {
+        if (storeFile == null) {
+            return;
+        }
+        final Properties properties = new Properties();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        try {
+            final File parent = storeFile.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                logger.warn(String.format("Folder for the listing index could not be created [%s]", parent));
+            }
+            final File tmp = new File(storeFile.getAbsolutePath() + ".tmp");
+            try (OutputStream os = new FileOutputStream(tmp)) {
+                properties.store(os, "FTP listing index");
+            }
+            if (!tmp.renameTo(storeFile)) {
+                logger.warn(String.format("Listing index could not be stored in [%s]", storeFile));
+            }
+        } catch (Exception ex) {
+            logger.warn(String.format("Listing index could not be stored in [%s]", storeFile), ex);
+        }
+    }
+
+    private static class Entry {
+        private final long lastModified;
+        private final long firstSeen;
+        private volatile boolean hasFiles = false;
+        private volatile boolean hasDirectories = false;
+
+        private Entry(long lastModified, long firstSeen) {
+            this.lastModified = lastModified;
+            this.firstSeen = firstSeen;
+        }
+
+        private static Entry parse(String value) {
+            final String[] parts = StringUtils.split(value, ',');
+            if (parts == null || parts.length != 4) {
+                return null;
+            }
+            try {
+                final Entry entry = new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                entry.hasFiles = Boolean.parseBoolean(parts[2]);
+                entry.hasDirectories = Boolean.parseBoolean(parts[3]);
+                return entry;
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return lastModified + "," + firstSeen + "," + hasFiles + "," + hasDirectories;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.services.utils.Json;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counters, histograms and gauges of the transfers done by the service. They can be exported as Json or
+ * in the Prometheus text format.
+ */
+public class Metrics {
+
+    public static final String POLLS = "ftp_polls_total";
+    public static final String POLL_FILES = "ftp_poll_files";
+    public static final String POLL_DURATION = "ftp_poll_duration_ms";
+    public static final String PICKUP_DURATION = "ftp_pickup_duration_ms";
+    public static final String APP_UPLOAD_DURATION = "ftp_app_upload_duration_ms";
+    public static final String EVENT_DURATION = "ftp_event_send_duration_ms";
+    public static final String FILES_IN = "ftp_files_in_total";
+    public static final String BYTES_IN = "ftp_bytes_in_total";
+    public static final String APP_DOWNLOAD_DURATION = "ftp_app_download_duration_ms";
+    public static final String STORE_DURATION = "ftp_store_duration_ms";
+    public static final String FILES_OUT = "ftp_files_out_total";
+    public static final String BYTES_OUT = "ftp_bytes_out_total";
+    public static final String UPLOAD_RETRIES = "ftp_upload_retries_total";
+    public static final String RECORDS = "ftp_records_total";
+    public static final String SPLIT_DURATION = "ftp_split_duration_ms";
+    public static final String CONNECT_DURATION = "ftp_connect_duration_ms";
+    public static final String INBOUND_IN_FLIGHT = "ftp_inbound_in_flight";
+    public static final String UPLOAD_WORKERS = "ftp_upload_workers";
+    public static final String UPLOAD_WORKERS_BUSY = "ftp_upload_workers_busy";
+    public static final String REMOTE_CONNECTIONS_ACTIVE = "ftp_remote_connections_active";
+    public static final String REMOTE_CONNECTIONS_IDLE = "ftp_remote_connections_idle";
+
+    private static final long[] DURATION_BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000};
+    private static final long[] COUNT_BUCKETS = {0, 1, 5, 10, 50, 100, 500, 1000};
+
+    private final Map<String, String> descriptions = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+
+    public Metrics() {
+        counter(POLLS, "Polls done on the input folder");
+        counter(FILES_IN, "Files uploaded to the app");
+        counter(BYTES_IN, "Bytes uploaded to the app");
+        counter(FILES_OUT, "Files stored on the server");
+        counter(BYTES_OUT, "Bytes stored on the server");
+        counter(UPLOAD_RETRIES, "Failed attempts to store a file on the server");
+        counter(RECORDS, "Records of new files sent in events");
+        histogram(POLL_FILES, "Files discovered per poll", COUNT_BUCKETS);
+        histogram(POLL_DURATION, "Duration of the polls, including the listing of the folder", DURATION_BUCKETS);
+        histogram(PICKUP_DURATION, "Time from the listing of a file until it is downloaded, including read lock and archive", DURATION_BUCKETS);
+        histogram(APP_UPLOAD_DURATION, "Duration of the uploads of files to the app", DURATION_BUCKETS);
+        histogram(EVENT_DURATION, "Duration of sending the events to the app", DURATION_BUCKETS);
+        histogram(APP_DOWNLOAD_DURATION, "Duration of the downloads of files from the app", DURATION_BUCKETS);
+        histogram(STORE_DURATION, "Duration of storing files on the server", DURATION_BUCKETS);
+        histogram(SPLIT_DURATION, "Duration of splitting new files in records, including the events", DURATION_BUCKETS);
+        histogram(CONNECT_DURATION, "Duration of the connection and login to the server", DURATION_BUCKETS);
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long value) {
+        final LongAdder counter = counters.get(name);
+        if (counter != null) {
+            counter.add(value);
+        }
+    }
+
+    public void record(String name, long value) {
+        final Histogram histogram = histograms.get(name);
+        if (histogram != null) {
+            histogram.record(value);
+        }
+    }
+
+    /**
+     * Records the milliseconds elapsed since the given start, taken from {@link System#nanoTime()}.
+     */
+    public void recordSince(String name, long startNanos) {
+        record(name, (System.nanoTime() - startNanos) / 1000000);
+    }
+
+    public void gauge(String name, String description, Supplier<Number> supplier) {
+        descriptions.put(name, description);
+        gauges.put(name, supplier);
+    }
+
+    public Json toJson() {
+        final Json json = Json.map();
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            json.set(counter.getKey(), counter.getValue().sum());
+        }
+        for (Map.Entry<String, Supplier<Number>> gauge : new TreeMap<>(gauges).entrySet()) {
+            json.set(gauge.getKey(), gauge.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> histogram : new TreeMap<>(histograms).entrySet()) {
+            json.set(histogram.getKey(), histogram.getValue().toJson());
+        }
+        return json;
+    }
+
+    public String toPrometheus() {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            header(sb, counter.getKey(), "counter");
+            sb.append(counter.getKey()).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, Supplier<Number>> gauge : new TreeMap<>(gauges).entrySet()) {
+            header(sb, gauge.getKey(), "gauge");
+            sb.append(gauge.getKey()).append(' ').append(gauge.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> histogram : new TreeMap<>(histograms).entrySet()) {
+            header(sb, histogram.getKey(), "histogram");
+            histogram.getValue().toPrometheus(histogram.getKey(), sb);
+        }
+        return sb.toString();
+    }
+
+    private void header(StringBuilder sb, String name, String type) {
+        sb.append("# HELP ").append(name).append(' ').append(descriptions.getOrDefault(name, name)).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void counter(String name, String description) {
+        descriptions.put(name, description);
+        counters.put(name, new LongAdder());
+    }
+
+    private void histogram(String name, String description, long[] buckets) {
+        descriptions.put(name, description);
+        histograms.put(name, new Histogram(buckets));
+    }
+
+    private static class Histogram {
+        private final long[] bounds;
+        private final LongAdder[] buckets;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong(0);
+
+        private Histogram(long[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new LongAdder[bounds.length];
+            for (int i = 0; i < bounds.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long value) {
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+            for (int i = 0; i < bounds.length; i++) {
+                if (value <= bounds[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+        }
+
+        private Json toJson() {
+            final long total = count.sum();
+            return Json.map()
+                    .set("count", total)
+                    .set("sum", sum.sum())
+                    .set("max", max.get())
+                    .set("avg", total > 0 ? sum.sum() / total : 0);
+        }
+
+        private void toPrometheus(String name, StringBuilder sb) {
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += buckets[i].sum();
+                sb.append(name).append("_bucket{le=\"").append(bounds[i]).append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append(name).append("_bucket{le=\"+Inf\"} ").append(count.sum()).append('\n');
+            sb.append(name).append("_sum ").append(sum.sum()).append('\n');
+            sb.append(name).append("_count ").append(count.sum()).append('\n');
+        }
+    }
+}
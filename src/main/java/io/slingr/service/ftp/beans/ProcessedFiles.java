@@ -0,0 +1,86 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Handler;
+import org.apache.camel.Headers;
+import org.apache.camel.component.file.GenericFile;
+import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.util.LRUCache;
+import org.apache.camel.util.ServiceHelper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * Keeps the files of the input folder that were already processed, by their path, size and modification time.
+ * <p>
+ * Files are checked when they are listed, before they are moved to the archive folder. They are added once
+ * they were sent to the app, when the exchange has the archived file, which has another name and may not keep
+ * the size and modification time of the listing. So the key of each file that can be picked is kept when it is
+ * listed, by the path it has in the input folder, and it is found again by that path, which is taken out of
+ * the archived one. Files that fail are not added, so they are retried.
+ */
+public class ProcessedFiles {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessedFiles.class);
+
+    public static final String PROCESSED_FILES_METHOD_PROCESSED = "processed";
+
+    private static final int MAX_LISTED_FILES = 10000;
+
+    private final IdempotentRepository<String> repository;
+    private final boolean recursive;
+    private final String inputFolder;
+    private final String archivedOutputFolder;
+    private final Map<String, String> listed = new LRUCache<>(MAX_LISTED_FILES);
+
+    public ProcessedFiles(IdempotentRepository<String> repository, boolean recursive, String inputFolder, String archivedOutputFolder) {
+        this.repository = repository;
+        this.recursive = recursive;
+        this.inputFolder = inputFolder;
+        this.archivedOutputFolder = archivedOutputFolder;
+    }
+
+    /**
+     * Loads the keys kept by the store.
+     */
+    public void start() throws Exception {
+        ServiceHelper.startService(repository);
+    }
+
+    public void stop() throws Exception {
+        ServiceHelper.stopService(repository);
+    }
+
+    /**
+     * Indicates if a file of the listing of the input folder was already processed.
+     */
+    public boolean contains(GenericFile<?> file) {
+        return repository.contains(key(file.getRelativeFilePath(), file.getFileLength(), file.getLastModified()));
+    }
+
+    /**
+     * Keeps the key of a file of the listing that is going to be picked, until it is processed.
+     */
+    public void listed(GenericFile<?> file) {
+        listed.put(file.getRelativeFilePath(), key(file.getRelativeFilePath(), file.getFileLength(), file.getLastModified()));
+    }
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void processed(@Headers Map<String, Object> headers) {
+        final String name = FilesService.getOriginalFileName((String) headers.get(Exchange.FILE_NAME_ONLY));
+        final String folder = recursive ? FilesService.relativeFolder((String) headers.get(Exchange.FILE_PARENT), archivedOutputFolder, inputFolder) : "";
+        final String path = StringUtils.isNotBlank(folder) ? folder + "/" + name : name;
+        final String key = listed.remove(path);
+        if (key == null) {
+            logger.info(String.format("File [%s] was not found in the listing, it will not be skipped if it is found again", path));
+            return;
+        }
+        repository.add(key);
+    }
+
+    static String key(String path, long length, long lastModified) {
+        return path + "-" + length + "-" + lastModified;
+    }
+}
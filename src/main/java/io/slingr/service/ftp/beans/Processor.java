@@ -3,6 +3,9 @@ package io.slingr.service.ftp.beans;
 import io.slingr.services.exceptions.ServiceException;
 import io.slingr.services.exceptions.ErrorCode;
 import io.slingr.service.ftp.components.CustomSftpComponent;
+import io.slingr.service.ftp.utils.ContentTypes;
+import io.slingr.service.ftp.utils.EmailHelper;
+import io.slingr.service.ftp.utils.ToJsonConverter;
 import io.slingr.services.services.AppLogs;
 import io.slingr.services.services.Events;
 import io.slingr.services.services.Files;
@@ -13,13 +16,21 @@ import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.builder.ValueBuilder;
 import org.apache.camel.component.file.remote.SftpComponent;
 import org.apache.camel.main.Main;
+import org.apache.camel.model.ChoiceDefinition;
+import org.apache.camel.model.ProcessorDefinition;
+import org.apache.camel.processor.idempotent.FileIdempotentRepository;
 import org.apache.camel.support.ExpressionAdapter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class Processor extends RouteBuilder {
@@ -31,12 +42,30 @@ public class Processor extends RouteBuilder {
     private static final long RECONNECTION_DELAY = 10000;
     private static final long LOCK_TIMEOUT = 30000;
     private static final long LOCK_CHECK_INTERVAL = 5000;
+    private static final String DONE_FILE_EXTENSION = ".done";
+    private static final long SERVER_ALIVE_INTERVAL = 30000;
+    private static final int SERVER_ALIVE_COUNT_MAX = 3;
     private static final String SFTP_COMPONENT = "sftp";
+    private static final String FILE_FILTER = "ftpFileFilter";
+    private static final String POLL_STRATEGY = "ftpPollStrategy";
+    private static final String POLL_SCHEDULER = "ftpPollScheduler";
+    // files are identified by their path, size and modification time, so a file that changed is processed again
+    private static final int IDEMPOTENT_CACHE_SIZE = 10000;
+    private static final long IDEMPOTENT_MAX_STORE_SIZE = 5 * 1024 * 1024; // 5 MB
     private static final String NEW_FILE_EVENT = "newFile";
+    private static final String UPLOAD_COMPLETED_EVENT = "uploadCompleted";
+    private static final String UPLOAD_FAILED_EVENT = "uploadFailed";
+    private static final String HEADER_JOB_ID = "FTP_UPLOAD_JOB_ID";
 
     private final AppLogs appLogs;
     private final Events events;
     private final FilesService filesService;
+    private final RecordSplitter recordSplitter;
+    private final ChecksumVerifier checksumVerifier;
+    private final RemoteClient remoteClient;
+    private final RemoteClientPool remoteClientPool;
+    private final SegmentedUploader segmentedUploader;
+    private final AppAttachmentStore attachmentStore;
     private final Main main = new Main();
 
     private final String name;
@@ -52,15 +81,24 @@ public class Processor extends RouteBuilder {
     private final String archivedOutputFolder;
     private final boolean recursive;
     private final String parentOutputFolder;
+    private final ProcessorOptions processorOptions;
+    private final InboundFileFilter<?> fileFilter;
+    private final InboundPollStrategy pollStrategy;
+    private final AdaptivePollScheduler pollScheduler;
+    private final ProcessedFiles processedFiles;
+    private final Metrics metrics = new Metrics();
+    private final String instanceId;
 
     public Processor(AppLogs appLogs, Events events, Files files, String name, boolean localDeployment,
                      String protocol, String host, String port, String username, String password, String filePattern,
-                     String inputFolder, String archiveFolder, String archiveGrouping, Boolean recursive, String outputFolder
+                     String inputFolder, String archiveFolder, String archiveGrouping, Boolean recursive, String outputFolder,
+                     ProcessorOptions processorOptions
     ) {
         this.appLogs = appLogs;
         this.events = events;
         this.name = name;
         this.localDeployment = localDeployment;
+        this.processorOptions = processorOptions != null ? processorOptions : ProcessorOptions.defaults();
 
         logger.info(String.format("Configured FTP service [%s://%s@%s:%s]", protocol, username, host, port));
         Protocol pProtocol = Protocol.fromCode(protocol);
@@ -113,24 +151,18 @@ public class Processor extends RouteBuilder {
         // output folder
         String outputFolder1 = normalizeFolder(outputFolder);
 
+        // files are claimed by moving them to the archive folder, which is an atomic rename on the server. When
+        // there are more instances, the name of the instance is added to the archived name so two instances never
+        // use the same name: the rename of the instance that lost the file fails and the file is skipped
+        this.instanceId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+        final String claimSuffix = this.processorOptions.isMultipleInstances() ? "." + instanceId : "";
+
         // add a filename pattern if needed
         ArchiveGrouping ag = ArchiveGrouping.fromCode(archiveGrouping);
         if (ag == null) {
             ag = ArchiveGrouping.MONTHLY;
         }
-        if(this.recursive) {
-            if (ag == ArchiveGrouping.NONE) {
-                aFolder += "${file:parent}/${date:now:yyyyMMddHHmmss}-${file:onlyname}";
-            } else {
-                aFolder += "${date:now:" + ag.getFormat() + "}/${file:parent}/${date:now:yyyyMMddHHmmss}-${file:onlyname}";
-            }
-        } else {
-            if (ag == ArchiveGrouping.NONE) {
-                aFolder += "${date:now:yyyyMMddHHmmss}-${file:onlyname}";
-            } else {
-                aFolder += "${date:now:" + ag.getFormat() + "}/${date:now:yyyyMMddHHmmss}-${file:onlyname}";
-            }
-        }
+        aFolder = archiveExpression(aFolder, ag, this.recursive, claimSuffix);
         this.inputFolder = iFolder;
         this.archiveFolder = aFolder;
 
@@ -138,12 +170,102 @@ public class Processor extends RouteBuilder {
 
         this.parentOutputFolder = StringUtils.isNotBlank(outputFolder1) ? outputFolder1 + "/" : "";
 
+        // the index of the listings is only useful when going through sub-directories
+        ListingIndex listingIndex = null;
+        if (this.recursive && this.processorOptions.isIncrementalScan()) {
+            listingIndex = new ListingIndex(new File(String.format("/tmp/%sFtpIndex/listing.properties", name)));
+            listingIndex.load();
+        }
+        if (this.processorOptions.isSkipProcessedFiles()) {
+            // the most recent keys are kept in memory; when the store is too big it is rewritten with them only
+            final File idempotentStore = new File(String.format("/tmp/%sFtpIndex/processed.dat", name));
+            if (!idempotentStore.getParentFile().exists() && !idempotentStore.getParentFile().mkdirs()) {
+                logger.warn(String.format("Folder of the processed files store [%s] could not be created", idempotentStore.getParent()));
+            }
+            this.processedFiles = new ProcessedFiles(FileIdempotentRepository.fileIdempotentRepository(idempotentStore, IDEMPOTENT_CACHE_SIZE, IDEMPOTENT_MAX_STORE_SIZE),
+                    this.recursive, this.inputFolder, this.archivedOutputFolder);
+        } else {
+            this.processedFiles = null;
+        }
+        // with the index, the whole listing is gone through on each poll so the index is kept; otherwise it stops
+        // once it has the files of the poll
+        this.fileFilter = new InboundFileFilter<>(listingIndex, processedFiles, filePattern, this.processorOptions.getReadLock(),
+                this.processorOptions.getReadLockMinAge(), listingIndex != null ? 0 : this.processorOptions.getMaxFilesPerPoll());
+        if (this.processorOptions.isAdaptivePolling() || this.processorOptions.getPollWindow() != null) {
+            final long maxDelay = this.processorOptions.isAdaptivePolling() ? this.processorOptions.getMaxPollInterval() : POLL_INTERVAL;
+            this.pollScheduler = new AdaptivePollScheduler(POLL_INTERVAL, maxDelay, this.processorOptions.getPollWindow());
+        } else {
+            this.pollScheduler = null;
+        }
+        this.pollStrategy = new InboundPollStrategy(fileFilter, pollScheduler, metrics);
+
+        // commands that the endpoints don't send go through their own connections, only available for FTP and FTPS
+        final boolean segmentedUploads = this.processorOptions.getSegmentedUploadThreshold() > 0;
+        if (this.protocol != Protocol.SFTP && (this.processorOptions.isVerifyChecksums() || this.processorOptions.isResumeTransfers() || segmentedUploads)) {
+            remoteClient = new RemoteClient(this.protocol, this.host, this.port, this.username, this.password, metrics);
+        } else {
+            remoteClient = null;
+            if (this.processorOptions.isResumeTransfers()) {
+                logger.warn("Uploads can't be resumed on SFTP servers");
+            }
+        }
+        final boolean segmented = segmentedUploads && remoteClient != null && !this.processorOptions.isStreamUploads();
+        if (remoteClient != null) {
+            // each upload in progress keeps its connections until it is done, so they are reused by the next one;
+            // no more connections than the uploads in progress can use are opened, so the server doesn't refuse them
+            final int connections = segmented ? this.processorOptions.getUploadSegments() : 1;
+            remoteClientPool = new RemoteClientPool(remoteClient, connections * this.processorOptions.getUploadConcurrency());
+        } else {
+            remoteClientPool = null;
+        }
+        if (segmented) {
+            segmentedUploader = new SegmentedUploader(remoteClientPool, this.processorOptions.getUploadSegments(),
+                    this.processorOptions.getSegmentedUploadThreshold() * 1024L * 1024L);
+        } else {
+            segmentedUploader = null;
+            if (segmentedUploads) {
+                logger.warn("Files can't be uploaded in segments on SFTP servers or when uploads are streamed");
+            }
+        }
+
         // we need to create a dedicated application client object to avoid blocking issues
-        filesService = new FilesService(files, this.appLogs, this.recursive, this.inputFolder, archivedOutputFolder, parentOutputFolder);
+        filesService = new FilesService(files, this.appLogs, this.recursive, this.inputFolder, archivedOutputFolder, parentOutputFolder,
+                this.processorOptions, metrics, remoteClientPool, segmentedUploader);
+        ToJsonConverter.setStringReplaces(this.processorOptions.getStringReplacements());
+        attachmentStore = new AppAttachmentStore(files);
+        ContentTypes.setCustomTypes(this.processorOptions.getContentTypes());
+        if (this.processorOptions.isVerifyChecksums()) {
+            final ChecksumAlgorithm algorithm = this.processorOptions.getChecksumAlgorithm();
+            if (this.protocol == Protocol.SFTP) {
+                logger.warn("Checksums of uploaded files can't be verified on SFTP servers");
+                checksumVerifier = null;
+            } else if (algorithm.getDigestName() == null) {
+                logger.warn(String.format("Checksums [%s] can't be verified by the server, use md5 or sha-256", algorithm.getCode()));
+                checksumVerifier = null;
+            } else {
+                checksumVerifier = new ChecksumVerifier(remoteClientPool, algorithm);
+            }
+        } else {
+            checksumVerifier = null;
+        }
+        if (this.processorOptions.getRecordFormat() != RecordFormat.NONE) {
+            recordSplitter = new RecordSplitter(events, this.appLogs, metrics, this.processorOptions);
+        } else {
+            recordSplitter = null;
+        }
     }
 
     public void start() {
         try {
+            main.bind(FILE_FILTER, fileFilter);
+            main.bind(POLL_STRATEGY, pollStrategy);
+            main.bind(EmailHelper.ATTACHMENT_STORE, attachmentStore);
+            if (pollScheduler != null) {
+                main.bind(POLL_SCHEDULER, pollScheduler);
+            }
+            if (processedFiles != null) {
+                processedFiles.start();
+            }
             main.addRouteBuilder(this);
             main.run();
         } catch (Exception ex) {
@@ -153,10 +275,24 @@ public class Processor extends RouteBuilder {
         }
     }
 
+    /**
+     * Indicates if the routes of the processor are running, as {@link #start()} blocks until the processor is stopped.
+     */
+    public boolean isStarted() {
+        return main.isStarted() && !main.getCamelContexts().isEmpty()
+                && main.getCamelContexts().stream().allMatch(context -> context.getStatus().isStarted());
+    }
+
     public void stop() {
         try {
             getContext().stop();
             main.stop();
+            if (remoteClientPool != null) {
+                remoteClientPool.close();
+            }
+            if (processedFiles != null) {
+                processedFiles.stop();
+            }
         } catch (Exception ex) {
             String message = String.format("Error when try to stop the ftp component: %s", ex.getMessage());
             appLogs.error(message);
@@ -174,6 +310,8 @@ public class Processor extends RouteBuilder {
         parametersToPrint.set("inputFolder", inputFolder);
         parametersToPrint.set("archivedOutputFolder", archivedOutputFolder);
         parametersToPrint.set("outputFolder", parentOutputFolder);
+        parametersToPrint.set("checksumAlgorithm", processorOptions.getChecksumAlgorithm().getCode());
+        parametersToPrint.set("verifyChecksums", checksumVerifier != null);
 
         String uri;
         final List<String> options = new ArrayList<>();
@@ -204,7 +342,7 @@ public class Processor extends RouteBuilder {
             if(localDeployment) {
                 sftpComponent = new SftpComponent();
             } else {
-                sftpComponent = new CustomSftpComponent();
+                sftpComponent = new CustomSftpComponent(metrics);
             }
             context.addComponent(SFTP_COMPONENT, sftpComponent);
         } else if(protocol.equals(Protocol.FTPS)){
@@ -226,17 +364,55 @@ public class Processor extends RouteBuilder {
         uploadOptions.add("passiveMode=true");
         parametersToPrint.set("passiveMode", true);
 
-        options.add("disconnect=true");
-        uploadOptions.add("disconnect=true");
-        parametersToPrint.set("disconnect", true);
+        // persistent connections are reused by the poller between polls and by the upload producers
+        // between uploads; they are checked with a NOOP (FTP) or a keep alive (SFTP) and reconnected if broken
+        final boolean disconnect = !this.processorOptions.isPersistentConnections();
+        options.add("disconnect=" + disconnect);
+        uploadOptions.add("disconnect=" + disconnect);
+        parametersToPrint.set("disconnect", disconnect);
+        if (!disconnect) {
+            if (protocol.equals(Protocol.SFTP)) {
+                options.add("serverAliveInterval=" + SERVER_ALIVE_INTERVAL);
+                uploadOptions.add("serverAliveInterval=" + SERVER_ALIVE_INTERVAL);
+                parametersToPrint.set("serverAliveInterval", SERVER_ALIVE_INTERVAL);
+
+                options.add("serverAliveCountMax=" + SERVER_ALIVE_COUNT_MAX);
+                uploadOptions.add("serverAliveCountMax=" + SERVER_ALIVE_COUNT_MAX);
+                parametersToPrint.set("serverAliveCountMax", SERVER_ALIVE_COUNT_MAX);
+            } else {
+                options.add("sendNoop=true");
+                uploadOptions.add("sendNoop=true");
+                parametersToPrint.set("sendNoop", true);
+            }
+        }
 
         options.add("delay=" + POLL_INTERVAL);
         parametersToPrint.set("delay", POLL_INTERVAL);
 
+        if (pollScheduler != null) {
+            options.add("scheduler=#" + POLL_SCHEDULER);
+            parametersToPrint.set("scheduler", POLL_SCHEDULER);
+            parametersToPrint.set("maxDelay", this.processorOptions.isAdaptivePolling() ? this.processorOptions.getMaxPollInterval() : POLL_INTERVAL);
+            if (this.processorOptions.getPollWindow() != null) {
+                parametersToPrint.set("pollWindow", this.processorOptions.getPollWindow().getCronExpression());
+            }
+        }
+        if (this.processorOptions.isAdaptivePolling()) {
+            // poll again right away while files keep coming
+            options.add("greedy=true");
+            parametersToPrint.set("greedy", true);
+        }
+
         final String localWorkDirectory = String.format("/tmp/%sFtpTmp", name);
-        options.add("localWorkDirectory="+localWorkDirectory);
+        if (this.processorOptions.isStreamDownloads()) {
+            // the data channel is handed to the route and read while the file is uploaded to the app
+            options.add("streamDownload=true");
+            parametersToPrint.set("streamDownload", true);
+        } else {
+            options.add("localWorkDirectory="+localWorkDirectory);
+            parametersToPrint.set("localWorkDirectory", localWorkDirectory);
+        }
         uploadOptions.add("localWorkDirectory="+localWorkDirectory);
-        parametersToPrint.set("localWorkDirectory", localWorkDirectory);
 
         options.add("binary=true");
         uploadOptions.add("binary=true");
@@ -246,9 +422,15 @@ public class Processor extends RouteBuilder {
         uploadOptions.add("useUserKnownHostsFile=false");
         parametersToPrint.set("useUserKnownHostsFile", false);
 
-        // we process one file at a time to avoid issues in some cases better to be safe than fast as we have had many issues in the past
-        options.add("maxMessagesPerPoll=1");
-        parametersToPrint.set("maxMessagesPerPoll", 1);
+        // by default we process one file at a time to avoid issues in some cases better to be safe than fast as we have had many issues in the past
+        options.add("maxMessagesPerPoll=" + this.processorOptions.getMaxFilesPerPoll());
+        parametersToPrint.set("maxMessagesPerPoll", this.processorOptions.getMaxFilesPerPoll());
+        if (this.recursive && this.processorOptions.isIncrementalScan()) {
+            // the listing index is only kept when the listing was complete
+            options.add("eagerMaxMessagesPerPoll=false");
+            parametersToPrint.set("eagerMaxMessagesPerPoll", false);
+        }
+        parametersToPrint.set("concurrency", this.processorOptions.getConcurrency());
 
         options.add("maximumReconnectAttempts=" + RECONNECTION_ATTEMPTS);
         parametersToPrint.set("maximumReconnectAttempts", RECONNECTION_ATTEMPTS);
@@ -263,8 +445,22 @@ public class Processor extends RouteBuilder {
             options.add("antFilterCaseSensitive=false");
             parametersToPrint.set("antFilterCaseSensitive", false);
         }
-        options.add("readLock=changed");
-        parametersToPrint.set("readLock", "changed");
+        final ReadLock readLock = this.processorOptions.getReadLock();
+        parametersToPrint.set("readLockStrategy", readLock.getCode());
+        if (readLock == ReadLock.CHANGED) {
+            options.add("readLock=changed");
+            parametersToPrint.set("readLock", "changed");
+        } else {
+            // the rest of the strategies are resolved by the file filter from the listing, without extra requests
+            options.add("readLock=none");
+            parametersToPrint.set("readLock", "none");
+            if (readLock == ReadLock.DONE_FILE) {
+                options.add("doneFileName=${file:name}" + DONE_FILE_EXTENSION);
+                parametersToPrint.set("doneFileName", "${file:name}" + DONE_FILE_EXTENSION);
+            } else if (readLock == ReadLock.MIN_AGE) {
+                parametersToPrint.set("readLockMinAge", this.processorOptions.getReadLockMinAge());
+            }
+        }
 
         options.add("fastExistsCheck=true");
         parametersToPrint.set("fastExistsCheck", true);
@@ -272,21 +468,42 @@ public class Processor extends RouteBuilder {
         options.add("ignoreFileNotFoundOrPermissionError=true");
         parametersToPrint.set("ignoreFileNotFoundOrPermissionError", true);
 
-        options.add("readLockTimeout=" + LOCK_TIMEOUT);
-        parametersToPrint.set("readLockTimeout", LOCK_TIMEOUT);
+        if (readLock == ReadLock.CHANGED) {
+            options.add("readLockTimeout=" + LOCK_TIMEOUT);
+            parametersToPrint.set("readLockTimeout", LOCK_TIMEOUT);
 
-        options.add("readLockCheckInterval=" + LOCK_CHECK_INTERVAL);
-        parametersToPrint.set("readLockCheckInterval", LOCK_CHECK_INTERVAL);
+            options.add("readLockCheckInterval=" + LOCK_CHECK_INTERVAL);
+            parametersToPrint.set("readLockCheckInterval", LOCK_CHECK_INTERVAL);
 
-        options.add("readLockLoggingLevel=INFO");
-        parametersToPrint.set("readLockLoggingLevel", "INFO");
+            options.add("readLockLoggingLevel=INFO");
+            parametersToPrint.set("readLockLoggingLevel", "INFO");
+        }
 
         options.add("preMove=" + archiveFolder);
         parametersToPrint.set("preMove", archiveFolder);
 
+        if (this.processorOptions.isMultipleInstances()) {
+            // instances go through the listing in a different order, so they don't compete for the same files
+            options.add("shuffle=true");
+            parametersToPrint.set("shuffle", true);
+            parametersToPrint.set("instanceId", instanceId);
+        }
+
+        if (processedFiles != null) {
+            // files are checked by the filter, and they are added once they were sent to the app
+            parametersToPrint.set("skipProcessedFiles", true);
+        }
+
         options.add("sendEmptyMessageWhenIdle=true");
         parametersToPrint.set("sendEmptyMessageWhenIdle", true);
 
+        options.add("filter=#" + FILE_FILTER);
+        parametersToPrint.set("filter", FILE_FILTER);
+
+        options.add("pollStrategy=#" + POLL_STRATEGY);
+        parametersToPrint.set("pollStrategy", POLL_STRATEGY);
+        parametersToPrint.set("incrementalScan", this.recursive && this.processorOptions.isIncrementalScan());
+
         options.add("flatten=false");
         parametersToPrint.set("flatten", false);
         if(this.recursive){
@@ -297,7 +514,22 @@ public class Processor extends RouteBuilder {
             parametersToPrint.set("recursive", false);
         }
         uri += "?" + StringUtils.join(options, "&");
-        uploadUri += "${headers."+FilesService.HEADER_INTERNAL_FOLDER+"}?" + StringUtils.join(uploadOptions, "&");
+        // the folder is part of the file name, so all the uploads share the same endpoint and its connections
+        uploadUri += "?" + StringUtils.join(uploadOptions, "&");
+        final String resumeUploadUri;
+        if (remoteClient != null && this.processorOptions.isResumeTransfers()) {
+            resumeUploadUri = uploadUri + "&fileExist=Append";
+            parametersToPrint.set("resumeUploads", true);
+        } else {
+            resumeUploadUri = null;
+        }
+        if (segmentedUploader != null) {
+            final int segments = this.processorOptions.getUploadSegments();
+            segmentedUploader.setExecutor(getContext().getExecutorServiceManager()
+                    .newFixedThreadPool(this, "ftp-upload-segments", Math.max(1, (segments - 1) * this.processorOptions.getUploadConcurrency())));
+            parametersToPrint.set("segmentedUploadThreshold", this.processorOptions.getSegmentedUploadThreshold());
+            parametersToPrint.set("uploadSegments", segments);
+        }
 
         ///////////////////////////////////////////////////////////////////////////////////////////
         // Events
@@ -305,13 +537,39 @@ public class Processor extends RouteBuilder {
 
         logger.info(String.format("Starting FTP service with parameters: %s", parametersToPrint));
 
-        from(uri)
-                .routeId("ftp-new-file-event")
+        ProcessorDefinition<?> newFileRoute = from(uri)
+                .routeId("ftp-new-file-event");
+        if (this.processorOptions.isStreamDownloads() && this.processorOptions.getConcurrency() > 1) {
+            // a streamed file is read from the connection of the poller, so it has to be consumed before the next one
+            logger.warn(String.format("Concurrency [%s] is ignored because downloads are streamed", this.processorOptions.getConcurrency()));
+        } else if (this.processorOptions.getReadLock() == ReadLock.DONE_FILE && this.processorOptions.getConcurrency() > 1) {
+            // the done file is deleted when the file is completed, with the connection of the poller that is not thread safe
+            logger.warn(String.format("Concurrency [%s] is ignored because the read lock is [%s]", this.processorOptions.getConcurrency(), ReadLock.DONE_FILE.getCode()));
+        } else if (this.processorOptions.getConcurrency() > 1) {
+            // files of the poll are handed to a bounded pool of workers; each file is still uploaded before its
+            // event is sent. When the queue is full the poller processes the file itself, slowing down the listing
+            newFileRoute = newFileRoute
+                    .threads(this.processorOptions.getConcurrency(), this.processorOptions.getConcurrency(), "ftp-new-file")
+                    .maxQueueSize(this.processorOptions.getMaxFilesPerPoll())
+                    .callerRunsWhenRejected(true);
+        }
+        final ChoiceDefinition newFileChoice = newFileRoute
+                .process(this::recordPickup)
                 .setHeader(FilesService.HEADER_NOT_EMPTY, constant(true))
                 .bean(filesService, FilesService.FILES_SERVICE_METHOD_NEW_FILE)
                 .choice()
                 .when(simple(String.format("${header.%s}", FilesService.HEADER_NOT_EMPTY)))
-                .bean(this, "sendEvent")
+                .bean(this, "sendEvent");
+        if (recordSplitter != null) {
+            parametersToPrint.set("recordFormat", this.processorOptions.getRecordFormat().getCode());
+            parametersToPrint.set("recordsPerEvent", this.processorOptions.getRecordsPerEvent());
+            parametersToPrint.setIfNotEmpty("recordElement", this.processorOptions.getRecordElement());
+            newFileChoice.bean(recordSplitter, RecordSplitter.RECORD_SPLITTER_METHOD_SPLIT);
+        }
+        if (processedFiles != null) {
+            newFileChoice.bean(processedFiles, ProcessedFiles.PROCESSED_FILES_METHOD_PROCESSED);
+        }
+        newFileChoice
                 .otherwise()
                 .bean(filesService, FilesService.FILES_SERVICE_NO_FILES)
                 .endChoice();
@@ -323,24 +581,90 @@ public class Processor extends RouteBuilder {
         from("direct:uploadFile")
                 .routeId("ftp-upload-file-function")
                 .bean(filesService, FilesService.FILES_SERVICE_METHOD_DOWNLOAD_FILE)
-                .setHeader(FilesService.HEADER_RETRIES, constant(3))
+                .setHeader(FilesService.HEADER_RETRIES, constant(FilesService.UPLOAD_ATTEMPTS))
                 .loopDoWhile(simple(String.format("${header.%s} > 0", FilesService.HEADER_RETRIES)))
                 .doTry()
-                .to("seda:ftp-uploadFile?timeout="+TimeUnit.MINUTES.toMillis(10))
+                // async jobs are sent without waiting, but each attempt has to wait for the headers of the upload
+                .to(ExchangePattern.InOut, "seda:ftp-uploadFile?timeout="+TimeUnit.MINUTES.toMillis(10))
                 .doCatch(Exception.class)
+                .process(exchange -> metrics.increment(Metrics.UPLOAD_RETRIES))
+                .bean(filesService, FilesService.FILES_SERVICE_METHOD_FAILED)
                 .setBody(exceptionJsonDetails())
                 .log(LoggingLevel.WARN, "Error when try to upload file [${body}]")
                 .setHeader(FilesService.HEADER_RETRIES, simple(String.format("${header.%s}-1", FilesService.HEADER_RETRIES)))
                 .endDoTry()
-                .end();
+                .end()
+                .bean(filesService, FilesService.FILES_SERVICE_METHOD_CLEAN_UP);
 
-        from("seda:ftp-uploadFile")
+        // uploads requested without waiting for the result; the result is notified with an event
+        from("seda:ftp-upload-file-jobs?concurrentConsumers=" + this.processorOptions.getUploadConcurrency())
+                .routeId("ftp-upload-file-job")
+                .doTry()
+                .to("direct:uploadFile")
+                .doCatch(Exception.class)
+                .setBody(exceptionJsonDetails())
+                .setHeader(FilesService.HEADER_RETRIES, constant(0))
+                .endDoTry()
+                .end()
+                .bean(this, "sendUploadResult");
+
+        ProcessorDefinition<?> uploadRoute = from("seda:ftp-uploadFile?concurrentConsumers=" + this.processorOptions.getUploadConcurrency())
                 .routeId("ftp-upload-file")
-                .bean(filesService, FilesService.FILES_SERVICE_METHOD_UPLOAD_FILE)
-                .recipientList(simple(uploadUri))
+                .bean(filesService, FilesService.FILES_SERVICE_METHOD_UPLOAD_FILE);
+        if (segmentedUploader != null && resumeUploadUri != null) {
+            // big files are stored in segments, and retries of the other files append the rest of the file
+            uploadRoute = uploadRoute
+                    .choice()
+                    .when(simple(String.format("${header.%s} == true", FilesService.HEADER_SEGMENTED)))
+                    .bean(segmentedUploader, SegmentedUploader.SEGMENTED_UPLOADER_METHOD_UPLOAD)
+                    .when(simple(String.format("${header.%s} > 0", FilesService.HEADER_RESUME_OFFSET)))
+                    .to(resumeUploadUri)
+                    .otherwise()
+                    .to(uploadUri)
+                    .end();
+        } else if (segmentedUploader != null) {
+            // big files are stored in segments over several connections
+            uploadRoute = uploadRoute
+                    .choice()
+                    .when(simple(String.format("${header.%s} == true", FilesService.HEADER_SEGMENTED)))
+                    .bean(segmentedUploader, SegmentedUploader.SEGMENTED_UPLOADER_METHOD_UPLOAD)
+                    .otherwise()
+                    .to(uploadUri)
+                    .end();
+        } else if (resumeUploadUri != null) {
+            // retries append the rest of the file to what the failed attempt stored
+            uploadRoute = uploadRoute
+                    .choice()
+                    .when(simple(String.format("${header.%s} > 0", FilesService.HEADER_RESUME_OFFSET)))
+                    .to(resumeUploadUri)
+                    .otherwise()
+                    .to(uploadUri)
+                    .end();
+        } else {
+            uploadRoute = uploadRoute.to(uploadUri);
+        }
+        uploadRoute = uploadRoute.bean(filesService, FilesService.FILES_SERVICE_METHOD_STORED);
+        if (checksumVerifier != null) {
+            // a file that doesn't match fails the attempt, so it is uploaded again
+            uploadRoute = uploadRoute.bean(checksumVerifier, ChecksumVerifier.CHECKSUM_VERIFIER_METHOD_VERIFY);
+        }
+        uploadRoute
                 .setHeader(FilesService.HEADER_RETRIES, constant(-1))
                 .log(LoggingLevel.INFO, "File uploaded [${headers."+FilesService.HEADER_FILE_PATH+"}]")
                 .setBody(constant(""));
+
+        metrics.gauge(Metrics.INBOUND_IN_FLIGHT, "Files of the input folder being processed",
+                () -> getContext().getInflightRepository().size("ftp-new-file-event"));
+        metrics.gauge(Metrics.UPLOAD_WORKERS, "Workers that store files on the server",
+                () -> this.processorOptions.getUploadConcurrency());
+        metrics.gauge(Metrics.UPLOAD_WORKERS_BUSY, "Workers storing a file on the server",
+                () -> getContext().getInflightRepository().size("ftp-upload-file"));
+        if (remoteClientPool != null) {
+            metrics.gauge(Metrics.REMOTE_CONNECTIONS_ACTIVE, "Connections of the service to the server in use by segments, checksums or resumes",
+                    remoteClientPool::getActive);
+            metrics.gauge(Metrics.REMOTE_CONNECTIONS_IDLE, "Connections of the service to the server kept open to be reused",
+                    remoteClientPool::getIdle);
+        }
     }
 
     public void sendFile(String fileId, String fileFolder) {
@@ -354,9 +678,130 @@ public class Processor extends RouteBuilder {
                 .request();
     }
 
+    public String sendFileAsync(String fileId, String fileFolder) {
+        final String jobId = UUID.randomUUID().toString();
+        final Json body = Json.map()
+                .set("fileId", fileId)
+                .setIfNotEmpty("folder", fileFolder);
+
+        DefaultFluentProducerTemplate.on(getContext())
+                .withHeader(HEADER_JOB_ID, jobId)
+                .withBody(body)
+                .to("seda:ftp-upload-file-jobs")
+                .send();
+        return jobId;
+    }
+
+    /**
+     * Uploads a batch of files. Files are downloaded from the app by a pool with one more thread than
+     * upload workers, so the next file is fetched from the app while the previous ones are stored on
+     * the server through the shared upload endpoint.
+     *
+     * @param files list of files with the fields 'fileId' and 'folder'
+     * @return the result of each upload, in the same order of the given files
+     */
+    public Json sendFiles(List<Json> files) throws Exception {
+        final List<Json> results = new ArrayList<>();
+        if (files == null || files.isEmpty()) {
+            return Json.map().set("files", results);
+        }
+        final ExecutorService executor = getContext().getExecutorServiceManager()
+                .newFixedThreadPool(this, "ftp-upload-files", Math.min(files.size(), this.processorOptions.getUploadConcurrency() + 1));
+        final ProducerTemplate template = getContext().createProducerTemplate();
+        try {
+            final List<Future<Json>> uploads = new ArrayList<>();
+            for (Json file : files) {
+                uploads.add(executor.submit(() -> sendFile(template, file)));
+            }
+            for (Future<Json> upload : uploads) {
+                results.add(upload.get());
+            }
+        } finally {
+            getContext().getExecutorServiceManager().shutdown(executor);
+            template.stop();
+        }
+        return Json.map().set("files", results);
+    }
+
+    private Json sendFile(ProducerTemplate template, Json file) {
+        final Json body = Json.map()
+                .set("fileId", file.string("fileId"))
+                .setIfNotEmpty("folder", file.string("folder"));
+        final Json result = Json.map()
+                .set("fileId", file.string("fileId"))
+                .setIfNotEmpty("folder", file.string("folder"));
+
+        final Exchange exchange = template.request("direct:uploadFile", ex -> ex.getIn().setBody(body));
+        final Message message = exchange.hasOut() ? exchange.getOut() : exchange.getIn();
+        if (exchange.getException() != null) {
+            result.set("uploaded", false);
+            result.set("error", exchange.getException().getMessage());
+        } else if (isUploaded(message.getHeader(FilesService.HEADER_RETRIES))) {
+            result.set("uploaded", true);
+            result.setIfNotEmpty("filePath", message.getHeader(FilesService.HEADER_FILE_PATH, String.class));
+            if (message.getHeader(FilesService.HEADER_CHECKSUM) instanceof Json) {
+                result.set("checksum", message.getHeader(FilesService.HEADER_CHECKSUM));
+            }
+        } else {
+            result.set("uploaded", false);
+            result.set("error", message.getBody() instanceof Json ? message.getBody() : String.valueOf(message.getBody()));
+        }
+        return result;
+    }
+
+    private static boolean isUploaded(Object retries) {
+        // the upload route sets the retries to -1 once the file is stored on the server
+        return retries instanceof Number && ((Number) retries).intValue() < 0;
+    }
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void sendUploadResult(@Body Object body, @Headers Map<String, Object> headers){
+        final Json result = Json.map()
+                .set("jobId", headers.get(HEADER_JOB_ID))
+                .setIfNotEmpty("fileId", (String) headers.get(FilesService.HEADER_FILE_ID))
+                .setIfNotEmpty("filePath", (String) headers.get(FilesService.HEADER_FILE_PATH));
+
+        if (isUploaded(headers.get(FilesService.HEADER_RETRIES))) {
+            if (headers.get(FilesService.HEADER_CHECKSUM) instanceof Json) {
+                result.set("checksum", headers.get(FilesService.HEADER_CHECKSUM));
+            }
+            events.send(UPLOAD_COMPLETED_EVENT, result);
+        } else {
+            result.set("error", body instanceof Json ? body : String.valueOf(body));
+            events.send(UPLOAD_FAILED_EVENT, result);
+        }
+    }
+
     @Handler
     public void sendEvent(@Body Json body, @Headers Map<String, Object> headers){
+        final long start = System.nanoTime();
         events.send(NEW_FILE_EVENT, body);
+        metrics.recordSince(Metrics.EVENT_DURATION, start);
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    private void recordPickup(Exchange exchange) {
+        // the exchange is created when the file is listed; the read lock and the archive move happen before this point
+        final Date created = exchange.getProperty(Exchange.CREATED_TIMESTAMP, Date.class);
+        if (created != null && exchange.getIn().getBody() != null) {
+            metrics.record(Metrics.PICKUP_DURATION, System.currentTimeMillis() - created.getTime());
+        }
+    }
+
+    /**
+     * Expression of the path where files are moved when they are picked, which is the archive folder followed by
+     * the date of the grouping, the folder of the file when it is recursive, and the name of the file with the
+     * time and the claim suffix before it.
+     *
+     * @param archiveFolder archive folder, ending with a slash
+     */
+    static String archiveExpression(String archiveFolder, ArchiveGrouping grouping, boolean recursive, String claimSuffix) {
+        final String groupFolder = grouping == ArchiveGrouping.NONE ? "" : "${date:now:" + grouping.getFormat() + "}/";
+        final String parentFolder = recursive ? "${file:parent}/" : "";
+        return archiveFolder + groupFolder + parentFolder + "${date:now:yyyyMMddHHmmss}" + claimSuffix + "-${file:onlyname}";
     }
 
     public static String normalizeFolder(String folder) {
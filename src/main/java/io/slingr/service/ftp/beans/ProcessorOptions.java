@@ -0,0 +1,335 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.services.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+import org.quartz.CronExpression;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tuning options of the processor that are read from the service configuration.
+ * Missing or blank values fall back to the defaults, which keep the original behaviour of the service.
+ */
+public class ProcessorOptions {
+
+    public static final int DEFAULT_MAX_FILES_PER_POLL = 1;
+    public static final int DEFAULT_CONCURRENCY = 1;
+    public static final int DEFAULT_UPLOAD_CONCURRENCY = 1;
+    public static final int DEFAULT_READ_LOCK_MIN_AGE = 60; // seconds
+    public static final int DEFAULT_MAX_POLL_INTERVAL = 300; // seconds
+    public static final int DEFAULT_RECORDS_PER_EVENT = 100;
+    public static final int DEFAULT_UPLOAD_SEGMENTS = 4;
+
+    private int maxFilesPerPoll = DEFAULT_MAX_FILES_PER_POLL;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int uploadConcurrency = DEFAULT_UPLOAD_CONCURRENCY;
+    private boolean persistentConnections = false;
+    private boolean multipleInstances = false;
+    private boolean skipProcessedFiles = false;
+    private boolean streamDownloads = false;
+    private boolean streamUploads = false;
+    private boolean incrementalScan = false;
+    private ReadLock readLock = ReadLock.CHANGED;
+    private long readLockMinAge = DEFAULT_READ_LOCK_MIN_AGE * 1000L;
+    private boolean adaptivePolling = false;
+    private long maxPollInterval = DEFAULT_MAX_POLL_INTERVAL * 1000L;
+    private CronExpression pollWindow = null;
+    private RecordFormat recordFormat = RecordFormat.NONE;
+    private int recordsPerEvent = DEFAULT_RECORDS_PER_EVENT;
+    private String recordElement = null;
+    private Map<String, String> stringReplacements = Collections.emptyMap();
+    private Map<String, String> contentTypes = Collections.emptyMap();
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.NONE;
+    private boolean verifyChecksums = false;
+    private boolean resumeTransfers = false;
+    private int segmentedUploadThreshold = 0;
+    private int uploadSegments = DEFAULT_UPLOAD_SEGMENTS;
+
+    private ProcessorOptions() {
+    }
+
+    public static ProcessorOptions defaults() {
+        return new ProcessorOptions();
+    }
+
+    public static ProcessorOptions fromConfiguration(Json configuration) {
+        final ProcessorOptions options = new ProcessorOptions();
+        options.maxFilesPerPoll = positiveInteger(configuration, "maxFilesPerPoll", DEFAULT_MAX_FILES_PER_POLL);
+        options.concurrency = positiveInteger(configuration, "concurrency", DEFAULT_CONCURRENCY);
+        options.uploadConcurrency = positiveInteger(configuration, "uploadConcurrency", DEFAULT_UPLOAD_CONCURRENCY);
+        options.persistentConnections = enabled(configuration, "persistentConnections", false);
+        options.multipleInstances = enabled(configuration, "multipleInstances", false);
+        options.skipProcessedFiles = enabled(configuration, "skipProcessedFiles", false);
+        options.streamDownloads = enabled(configuration, "streamDownloads", false);
+        options.streamUploads = enabled(configuration, "streamUploads", false);
+        options.incrementalScan = enabled(configuration, "incrementalScan", false);
+        final String readLock = configuration != null ? configuration.string("readLock") : null;
+        if (StringUtils.isNotBlank(readLock)) {
+            options.readLock = ReadLock.fromCode(readLock.trim());
+            if (options.readLock == null) {
+                throw new IllegalArgumentException(String.format("Invalid read lock [%s]", readLock));
+            }
+        }
+        options.readLockMinAge = positiveInteger(configuration, "readLockMinAge", DEFAULT_READ_LOCK_MIN_AGE) * 1000L;
+        options.adaptivePolling = enabled(configuration, "adaptivePolling", false);
+        options.maxPollInterval = positiveInteger(configuration, "maxPollInterval", DEFAULT_MAX_POLL_INTERVAL) * 1000L;
+        final String pollWindow = configuration != null ? configuration.string("pollWindow") : null;
+        if (StringUtils.isNotBlank(pollWindow)) {
+            try {
+                options.pollWindow = new CronExpression(pollWindow.trim());
+            } catch (ParseException ex) {
+                throw new IllegalArgumentException(String.format("Invalid poll window [%s]: %s", pollWindow, ex.getMessage()), ex);
+            }
+        }
+        final String recordFormat = configuration != null ? configuration.string("recordFormat") : null;
+        if (StringUtils.isNotBlank(recordFormat)) {
+            options.recordFormat = RecordFormat.fromCode(recordFormat.trim());
+            if (options.recordFormat == null) {
+                throw new IllegalArgumentException(String.format("Invalid record format [%s]", recordFormat));
+            }
+        }
+        options.recordsPerEvent = positiveInteger(configuration, "recordsPerEvent", DEFAULT_RECORDS_PER_EVENT);
+        options.recordElement = configuration != null ? StringUtils.trimToNull(configuration.string("recordElement")) : null;
+        final String checksumAlgorithm = configuration != null ? configuration.string("checksumAlgorithm") : null;
+        if (StringUtils.isNotBlank(checksumAlgorithm)) {
+            options.checksumAlgorithm = ChecksumAlgorithm.fromCode(checksumAlgorithm.trim());
+            if (options.checksumAlgorithm == null) {
+                throw new IllegalArgumentException(String.format("Invalid checksum algorithm [%s]", checksumAlgorithm));
+            }
+        }
+        options.verifyChecksums = enabled(configuration, "verifyChecksums", false);
+        options.resumeTransfers = enabled(configuration, "resumeTransfers", false);
+        options.segmentedUploadThreshold = integer(configuration, "segmentedUploadThreshold", 0);
+        if (options.segmentedUploadThreshold < 0) {
+            throw new IllegalArgumentException(String.format("The value for [segmentedUploadThreshold] can't be negative [%s]", options.segmentedUploadThreshold));
+        }
+        options.uploadSegments = positiveInteger(configuration, "uploadSegments", DEFAULT_UPLOAD_SEGMENTS);
+        options.stringReplacements = stringMap(configuration, "stringReplacements");
+        options.contentTypes = stringMap(configuration, "contentTypes");
+        return options;
+    }
+
+    /**
+     * Maximum amount of files that are listed and processed on each poll of the input folder.
+     */
+    public int getMaxFilesPerPoll() {
+        return maxFilesPerPoll;
+    }
+
+    /**
+     * Amount of workers that process the files of a poll in parallel.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Amount of workers that upload files to the server in parallel.
+     */
+    public int getUploadConcurrency() {
+        return uploadConcurrency;
+    }
+
+    /**
+     * Indicates if connections to the server are kept open between polls and uploads instead of
+     * connecting and login in again for each one of them.
+     */
+    public boolean isPersistentConnections() {
+        return persistentConnections;
+    }
+
+    /**
+     * Indicates if more than one instance of the service polls the same input folder, so each instance
+     * has to claim the files before processing them.
+     */
+    public boolean isMultipleInstances() {
+        return multipleInstances;
+    }
+
+    /**
+     * Indicates if files that were already processed are skipped when they are found again with the same
+     * path, size and modification time.
+     */
+    public boolean isSkipProcessedFiles() {
+        return skipProcessedFiles;
+    }
+
+    /**
+     * Indicates if new files are streamed from the server to the app instead of being copied to
+     * the local work directory first.
+     */
+    public boolean isStreamDownloads() {
+        return streamDownloads;
+    }
+
+    /**
+     * Indicates if files are streamed from the app to the server instead of being copied to a
+     * temporary file first.
+     */
+    public boolean isStreamUploads() {
+        return streamUploads;
+    }
+
+    /**
+     * Indicates if sub-directories of the input folder that didn't change since the last poll are skipped
+     * when looking for files in a recursive way.
+     */
+    public boolean isIncrementalScan() {
+        return incrementalScan;
+    }
+
+    /**
+     * Strategy used to decide that a file in the input folder is complete.
+     */
+    public ReadLock getReadLock() {
+        return readLock;
+    }
+
+    /**
+     * Minimum age in milliseconds of a file to be picked when the read lock is {@link ReadLock#MIN_AGE}.
+     */
+    public long getReadLockMinAge() {
+        return readLockMinAge;
+    }
+
+    /**
+     * Indicates if the input folder is polled again right away while files keep coming, and less often
+     * while there are no files.
+     */
+    public boolean isAdaptivePolling() {
+        return adaptivePolling;
+    }
+
+    /**
+     * Maximum delay in milliseconds between polls when adaptive polling is enabled.
+     */
+    public long getMaxPollInterval() {
+        return maxPollInterval;
+    }
+
+    /**
+     * Cron expression with the minutes when the input folder can be polled, or null to poll at any time.
+     */
+    public CronExpression getPollWindow() {
+        return pollWindow;
+    }
+
+    /**
+     * Format used to split the files of the input folder in records that are sent in 'newRecords' events.
+     */
+    public RecordFormat getRecordFormat() {
+        return recordFormat;
+    }
+
+    /**
+     * Maximum amount of records sent on each 'newRecords' event.
+     */
+    public int getRecordsPerEvent() {
+        return recordsPerEvent;
+    }
+
+    /**
+     * Name of the XML elements that are records, or null to use the children of the root element.
+     */
+    public String getRecordElement() {
+        return recordElement;
+    }
+
+    /**
+     * Regular expressions and their replacements applied to the content of the files before converting
+     * them to Json.
+     */
+    public Map<String, String> getStringReplacements() {
+        return stringReplacements;
+    }
+
+    /**
+     * Content types by file extension that are used instead of the default ones.
+     */
+    public Map<String, String> getContentTypes() {
+        return contentTypes;
+    }
+
+    /**
+     * Algorithm of the checksums computed while files are transferred.
+     */
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Indicates if the checksums of the uploaded files are compared with the ones computed by the server.
+     */
+    public boolean isVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    /**
+     * Indicates if a failed upload is retried from the bytes that were already stored on the server.
+     */
+    public boolean isResumeTransfers() {
+        return resumeTransfers;
+    }
+
+    /**
+     * Size in MB from which uploads are stored in segments over several connections, or 0 if they are
+     * never segmented.
+     */
+    public int getSegmentedUploadThreshold() {
+        return segmentedUploadThreshold;
+    }
+
+    /**
+     * Amount of segments, and connections, used to upload each big file.
+     */
+    public int getUploadSegments() {
+        return uploadSegments;
+    }
+
+    static int positiveInteger(Json configuration, String key, int defaultValue) {
+        final int value = integer(configuration, key, defaultValue);
+        if (value < 1) {
+            throw new IllegalArgumentException(String.format("The value for [%s] must be greater than zero [%s]", key, value));
+        }
+        return value;
+    }
+
+    static int integer(Json configuration, String key, int defaultValue) {
+        final String value = configuration != null ? configuration.string(key) : null;
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Invalid value for [%s]: [%s]", key, value), ex);
+        }
+    }
+
+    static boolean enabled(Json configuration, String key, boolean defaultValue) {
+        final String value = configuration != null ? configuration.string(key) : null;
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        return value.trim().equals("enabled");
+    }
+
+    static Map<String, String> stringMap(Json configuration, String key) {
+        final String value = configuration != null ? configuration.string(key) : null;
+        if (StringUtils.isBlank(value)) {
+            return Collections.emptyMap();
+        }
+        final Map<String, String> map = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Object> entry : Json.parse(value).toMap().entrySet()) {
+                map.put(entry.getKey(), entry.getValue() != null ? entry.getValue().toString() : "");
+            }
+        } catch (Exception ex) {
+            throw new IllegalArgumentException(String.format("Invalid value for [%s]: [%s]", key, value), ex);
+        }
+        return map;
+    }
+}
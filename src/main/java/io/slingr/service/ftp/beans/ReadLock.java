@@ -0,0 +1,36 @@
+package io.slingr.service.ftp.beans;
+
+/**
+ * Ways to decide that a file in the input folder is completely written and can be picked.
+ */
+public enum ReadLock {
+    /** the size and modification date of the file are checked several times until they don't change */
+    CHANGED("changed"),
+    /** the file is picked once a file with the same name and the extension '.done' exists */
+    DONE_FILE("doneFile"),
+    /** the file is written with the extension '.tmp' and renamed when it is complete */
+    TEMP_FILE("tempFile"),
+    /** the file is picked once its modification date is older than a minimum age */
+    MIN_AGE("minAge"),
+    /** the file is picked once its size and modification date are the same in two consecutive polls */
+    STABLE("stable");
+
+    private final String code;
+
+    ReadLock(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public static ReadLock fromCode(String code) {
+        for (ReadLock value : values()) {
+            if (value.code.equalsIgnoreCase(code)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,65 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Formats of the files of the input folder that can be split in records.
+ */
+public enum RecordFormat {
+    /** files are not split, only the event with the file is sent */
+    NONE("none"),
+    /** the format is taken from the extension of the file; files with other extensions are not split */
+    AUTO("auto"),
+    /** each line is a record; the first line has the names of the columns */
+    CSV("csv"),
+    /** a top level array where each element is a record, or one Json value per line */
+    JSON("json"),
+    /** each repeated element is a record */
+    XML("xml");
+
+    private final String code;
+
+    RecordFormat(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Resolves the format of a file when the format is {@link #AUTO}.
+     *
+     * @return the format of the file or {@link #NONE} if it can't be split
+     */
+    public RecordFormat resolve(String fileName) {
+        if (this != AUTO) {
+            return this;
+        }
+        final String extension = StringUtils.lowerCase(StringUtils.substringAfterLast(fileName, "."));
+        if (extension == null) {
+            return NONE;
+        }
+        switch (extension) {
+            case "csv":
+                return CSV;
+            case "json":
+            case "ndjson":
+            case "jsonl":
+                return JSON;
+            case "xml":
+                return XML;
+            default:
+                return NONE;
+        }
+    }
+
+    public static RecordFormat fromCode(String code) {
+        for (RecordFormat value : values()) {
+            if (value.code.equalsIgnoreCase(code)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
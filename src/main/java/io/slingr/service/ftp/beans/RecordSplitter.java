@@ -0,0 +1,164 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.service.ftp.utils.CsvRecordReader;
+import io.slingr.service.ftp.utils.JsonRecordReader;
+import io.slingr.service.ftp.utils.RecordReader;
+import io.slingr.service.ftp.utils.XmlRecordReader;
+import io.slingr.services.services.AppLogs;
+import io.slingr.services.services.Events;
+import io.slingr.services.utils.Json;
+import org.apache.camel.Body;
+import org.apache.camel.Exchange;
+import org.apache.camel.Handler;
+import org.apache.camel.Headers;
+import org.apache.commons.io.input.BOMInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the new files in records that are sent in chunks with 'newRecords' events, after the event of
+ * the file was sent.
+ * <p>
+ * Records are read one at a time from the local copy of the file, or from the copy made while the content
+ * was uploaded when downloads are streamed, and each chunk is sent before reading the next one. So memory
+ * usage depends on the size of the chunks and not on the size of the files, and a slow app slows down the
+ * reading of the file. If the file can't be split, a 'recordsFailed' event is sent.
+ */
+public class RecordSplitter {
+    private static final Logger logger = LoggerFactory.getLogger(RecordSplitter.class);
+
+    public static final String RECORD_SPLITTER_METHOD_SPLIT = "split";
+
+    private static final String NEW_RECORDS_EVENT = "newRecords";
+    private static final String RECORDS_FAILED_EVENT = "recordsFailed";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Events events;
+    private final AppLogs appLogs;
+    private final Metrics metrics;
+    private final RecordFormat format;
+    private final int recordsPerEvent;
+    private final String recordElement;
+
+    public RecordSplitter(Events events, AppLogs appLogs, Metrics metrics, ProcessorOptions options) {
+        this.events = events;
+        this.appLogs = appLogs;
+        this.metrics = metrics;
+        this.format = options.getRecordFormat();
+        this.recordsPerEvent = options.getRecordsPerEvent();
+        this.recordElement = options.getRecordElement();
+    }
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void split(@Body Json file, @Headers Map<String, Object> headers) {
+        if (file == null) {
+            return;
+        }
+        final String fileName = file.string("fileName");
+        final RecordFormat fileFormat = format.resolve(fileName);
+        if (fileFormat == RecordFormat.NONE) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final String localFilePath = headers.containsKey(FilesService.HEADER_RECORDS_FILE_PATH)
+                ? (String) headers.get(FilesService.HEADER_RECORDS_FILE_PATH) : (String) headers.get(Exchange.FILE_LOCAL_WORK_PATH);
+        try (RecordReader reader = open(fileFormat, fileName, localFilePath)) {
+            final int records = sendRecords(reader, file, fileFormat);
+            logger.info(String.format("File [%s] was split in [%s] records", fileName, records));
+        } catch (Exception ex) {
+            final String message = String.format("Error when splitting file [%s] in records: %s", fileName, ex.getMessage());
+            logger.warn(message, ex);
+            appLogs.error(message);
+            sendFailure(file, fileFormat, ex);
+        } finally {
+            metrics.recordSince(Metrics.SPLIT_DURATION, start);
+        }
+    }
+
+    private int sendRecords(RecordReader reader, Json file, RecordFormat fileFormat) throws IOException {
+        final List<Json> chunk = new ArrayList<>(recordsPerEvent);
+        int chunkIndex = 0;
+        int offset = 0;
+        Json record = reader.next();
+        while (record != null) {
+            chunk.add(record);
+            record = reader.next();
+            if (chunk.size() >= recordsPerEvent || record == null) {
+                sendChunk(file, fileFormat, chunkIndex++, offset, chunk, record == null);
+                offset += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (chunkIndex == 0) {
+            // the app is notified even when the file has no records
+            sendChunk(file, fileFormat, 0, 0, chunk, true);
+        }
+        return offset;
+    }
+
+    private void sendChunk(Json file, RecordFormat fileFormat, int chunkIndex, int offset, List<Json> records, boolean last) {
+        final Json event = Json.map()
+                .set("fileId", file.string("fileId"))
+                .set("fileName", file.string("fileName"))
+                .setIfNotEmpty("filePath", file.string("filePath"))
+                .set("format", fileFormat.getCode())
+                .set("chunk", chunkIndex)
+                .set("offset", offset)
+                .set("records", records)
+                .set("last", last);
+        if (last) {
+            event.set("totalRecords", offset + records.size());
+        }
+        // events are sent synchronously, so the file is not read faster than the app takes the records
+        events.send(NEW_RECORDS_EVENT, event);
+        metrics.add(Metrics.RECORDS, records.size());
+    }
+
+    private void sendFailure(Json file, RecordFormat fileFormat, Exception ex) {
+        final Json event = Json.map()
+                .set("fileId", file.string("fileId"))
+                .set("fileName", file.string("fileName"))
+                .setIfNotEmpty("filePath", file.string("filePath"))
+                .set("format", fileFormat.getCode())
+                .set("error", ex.getMessage());
+        try {
+            events.send(RECORDS_FAILED_EVENT, event);
+        } catch (Exception e) {
+            logger.warn(String.format("Event [%s] of file [%s] could not be sent: %s", RECORDS_FAILED_EVENT, file.string("fileName"), e.getMessage()), e);
+        }
+    }
+
+    private RecordReader open(RecordFormat fileFormat, String fileName, String localFilePath) throws IOException {
+        final InputStream is = new BOMInputStream(new BufferedInputStream(openContent(fileName, localFilePath), READ_BUFFER_SIZE));
+        switch (fileFormat) {
+            case CSV:
+                return new CsvRecordReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            case JSON:
+                return new JsonRecordReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            case XML:
+                return new XmlRecordReader(is, recordElement);
+            default:
+                is.close();
+                throw new IllegalArgumentException(String.format("Invalid record format [%s]", fileFormat));
+        }
+    }
+
+    private InputStream openContent(String fileName, String localFilePath) throws IOException {
+        if (StringUtils.isBlank(localFilePath) || !new File(localFilePath).exists()) {
+            throw new IOException(String.format("There is no local copy of the file [%s]", fileName));
+        }
+        return new FileInputStream(localFilePath);
+    }
+}
@@ -0,0 +1,196 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.FTPSClient;
+
+import java.io.IOException;
+
+/**
+ * Opens control connections to the FTP or FTPS server for the commands that the Camel endpoints don't
+ * send, like asking for the checksum or the size of a file. The commands run on connections borrowed from a
+ * {@link RemoteClientPool}. SFTP is not supported.
+ */
+public class RemoteClient {
+
+    private static final int TIMEOUT = 30000;
+
+    private final Protocol protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final Metrics metrics;
+
+    private volatile boolean hashSupported = true;
+
+    public RemoteClient(Protocol protocol, String host, String port, String username, String password) {
+        this(protocol, host, port, username, password, null);
+    }
+
+    public RemoteClient(Protocol protocol, String host, String port, String username, String password, Metrics metrics) {
+        if (protocol == Protocol.SFTP) {
+            throw new IllegalArgumentException("SFTP servers are not supported");
+        }
+        this.protocol = protocol;
+        this.host = host;
+        this.port = Integer.parseInt(port.trim());
+        this.username = StringUtils.isNotBlank(username) ? username : "anonymous";
+        this.password = password != null ? password : "";
+        this.metrics = metrics;
+    }
+
+    /**
+     * Connects and logs in to the server, in binary and passive mode.
+     *
+     * @return the connected client, which has to be closed with {@link #close(FTPClient)}
+     * @throws IOException if the connection or the login fail
+     */
+    public FTPClient connect() throws IOException {
+        final FTPClient client;
+        if (protocol == Protocol.FTPS) {
+            client = new FTPSClient();
+        } else {
+            client = new FTPClient();
+        }
+        client.setConnectTimeout(TIMEOUT);
+        client.setDefaultTimeout(TIMEOUT);
+        final long start = System.nanoTime();
+        try {
+            client.connect(host, port);
+            if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+                throw new IOException(String.format("Connection refused by server [%s]", StringUtils.trim(client.getReplyString())));
+            }
+            if (client instanceof FTPSClient) {
+                ((FTPSClient) client).execPBSZ(0);
+                ((FTPSClient) client).execPROT("P");
+            }
+            if (!client.login(username, password)) {
+                throw new IOException(String.format("Login failed [%s]", StringUtils.trim(client.getReplyString())));
+            }
+            client.setFileType(FTP.BINARY_FILE_TYPE);
+            client.enterLocalPassiveMode();
+            client.setSoTimeout(TIMEOUT);
+            if (metrics != null) {
+                metrics.recordSince(Metrics.CONNECT_DURATION, start);
+            }
+            return client;
+        } catch (IOException ex) {
+            close(client);
+            throw ex;
+        }
+    }
+
+    public void close(FTPClient client) {
+        if (client != null && client.isConnected()) {
+            try {
+                client.logout();
+            } catch (IOException ex) {
+                // nothing to do, it is disconnected below
+            }
+            try {
+                client.disconnect();
+            } catch (IOException ex) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Asks the server for the checksum of a file, with the HASH command or with the X commands when HASH
+     * is not available.
+     *
+     * @param client connection to the server
+     * @param path path of the file, relative to the home folder
+     * @param algorithm algorithm of the checksum, MD5 or SHA-256
+     * @return the checksum in lower case hexadecimal, or null if the server can't compute it
+     * @throws IOException if the server can't be reached
+     */
+    public String checksum(FTPClient client, String path, ChecksumAlgorithm algorithm) throws IOException {
+        if (algorithm.getDigestName() == null) {
+            return null;
+        }
+        final int length = algorithm == ChecksumAlgorithm.MD5 ? 32 : 64;
+        if (hashSupported) {
+            if (FTPReply.isPositiveCompletion(client.sendCommand("OPTS", "HASH " + algorithm.getDigestName()))
+                    && FTPReply.isPositiveCompletion(client.sendCommand("HASH", path))) {
+                // 213 SHA-256 0-49 <checksum> <file name>
+                return findHex(client.getReplyString(), length);
+            }
+            hashSupported = false;
+        }
+        final String command = algorithm == ChecksumAlgorithm.MD5 ? "XMD5" : "XSHA256";
+        if (FTPReply.isPositiveCompletion(client.sendCommand(command, path))) {
+            return findHex(client.getReplyString(), length);
+        }
+        return null;
+    }
+
+    /**
+     * State of a file on the server, which is its modification time and its size as the server reports them.
+     * It changes when the file is written, and both values come from the server, so they can be compared
+     * without depending on the clock of the service.
+     *
+     * @param client connection to the server
+     * @param path path of the file, relative to the home folder
+     * @return the state, or null if the file doesn't exist or the server doesn't report it
+     * @throws IOException if the server can't be reached
+     */
+    public String state(FTPClient client, String path) throws IOException {
+        if (!FTPReply.isPositiveCompletion(client.sendCommand("MDTM", path))) {
+            return null;
+        }
+        final String modified = StringUtils.substringAfter(StringUtils.trim(client.getReplyString()), " ").trim();
+        if (!FTPReply.isPositiveCompletion(client.sendCommand("SIZE", path))) {
+            return null;
+        }
+        final String size = StringUtils.substringAfter(StringUtils.trim(client.getReplyString()), " ").trim();
+        return modified + " " + size;
+    }
+
+    /**
+     * Size of the file in a state returned by {@link #state(FTPClient, String)}, or 0 if it is invalid.
+     */
+    public static long stateSize(String state) {
+        try {
+            return Long.parseLong(StringUtils.substringAfterLast(state, " "));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Deletes a file, ignoring if the server refuses it.
+     *
+     * @param client connection to the server
+     * @param path path of the file, relative to the home folder
+     * @throws IOException if the server can't be reached
+     */
+    public void delete(FTPClient client, String path) throws IOException {
+        // when it is not deleted, the file is overwritten by the next attempt
+        client.deleteFile(path);
+    }
+
+    private static String findHex(String reply, int length) {
+        if (reply == null) {
+            return null;
+        }
+        for (String token : StringUtils.split(reply)) {
+            if (token.length() == length && isHex(token)) {
+                return token.toLowerCase();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
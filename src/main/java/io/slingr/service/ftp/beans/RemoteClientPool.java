@@ -0,0 +1,155 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps connections of a {@link RemoteClient} open to be reused. Idle connections are checked with a NOOP
+ * before they are handed out, and they are replaced if the server closed them.
+ * <p>
+ * No more than the given number of connections are open at the same time, as servers refuse the ones over
+ * their limit per user (421). When all of them are borrowed, {@link #borrow()} waits until one is released.
+ */
+public class RemoteClientPool {
+
+    private static final long BORROW_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private final RemoteClient remoteClient;
+    private final BlockingQueue<FTPClient> idle;
+    private final Semaphore permits;
+    private final Set<FTPClient> borrowed = ConcurrentHashMap.newKeySet();
+    private final long borrowTimeout;
+
+    public RemoteClientPool(RemoteClient remoteClient, int maxTotal) {
+        this(remoteClient, maxTotal, BORROW_TIMEOUT);
+    }
+
+    RemoteClientPool(RemoteClient remoteClient, int maxTotal, long borrowTimeout) {
+        this.remoteClient = remoteClient;
+        this.idle = new LinkedBlockingQueue<>(maxTotal);
+        this.permits = new Semaphore(maxTotal, true);
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    /**
+     * Hands out an idle connection or opens a new one, waiting while all the connections are borrowed.
+     *
+     * @return the connection, which has to be given back with {@link #release(FTPClient)} or {@link #invalidate(FTPClient)}
+     * @throws IOException if no connection is released in time, or a new one can't be opened
+     */
+    public FTPClient borrow() throws IOException {
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException(String.format("No connection to the server was released in [%s] ms", borrowTimeout));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to the server", ex);
+        }
+        try {
+            final FTPClient client = idleOrNew();
+            borrowed.add(client);
+            return client;
+        } catch (IOException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private FTPClient idleOrNew() throws IOException {
+        FTPClient client;
+        while ((client = idle.poll()) != null) {
+            try {
+                if (client.sendNoOp()) {
+                    return client;
+                }
+            } catch (IOException ex) {
+                // closed by the server, a new one is used
+            }
+            remoteClient.close(client);
+        }
+        return remoteClient.connect();
+    }
+
+    /**
+     * Runs a command on a borrowed connection, which is given back when it is done. The connection is
+     * closed if the command fails.
+     */
+    public <T> T execute(Command<T> command) throws IOException {
+        final FTPClient client = borrow();
+        try {
+            final T result = command.run(client);
+            release(client);
+            return result;
+        } catch (IOException | RuntimeException ex) {
+            invalidate(client);
+            throw ex;
+        }
+    }
+
+    /**
+     * Connections borrowed and not given back yet.
+     */
+    public int getActive() {
+        return borrowed.size();
+    }
+
+    /**
+     * Connections open and waiting to be borrowed.
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public RemoteClient getRemoteClient() {
+        return remoteClient;
+    }
+
+    /**
+     * Returns a connection that can be reused. It is closed when there are enough idle connections.
+     */
+    public void release(FTPClient client) {
+        if (client == null || !borrowed.remove(client)) {
+            return;
+        }
+        try {
+            if (!client.isConnected() || !idle.offer(client)) {
+                remoteClient.close(client);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes a connection that can't be reused, like the ones where a transfer failed.
+     */
+    public void invalidate(FTPClient client) {
+        if (client == null || !borrowed.remove(client)) {
+            return;
+        }
+        try {
+            remoteClient.close(client);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void close() {
+        FTPClient client;
+        while ((client = idle.poll()) != null) {
+            remoteClient.close(client);
+        }
+    }
+
+    public interface Command<T> {
+        T run(FTPClient client) throws IOException;
+    }
+}
@@ -0,0 +1,267 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Handler;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.net.ftp.FTPClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads big files in segments that are stored in parallel over several connections, so the transfer is
+ * not limited by what a single connection can move over links with high latency.
+ * <p>
+ * The STOR of the first segment is opened before the others, as servers create or truncate the file when
+ * they open it. Once the server accepted it, the rest of the segments are stored at the same time, each one
+ * with a REST at its offset before the STOR, while the first segment is written. If any of those segments
+ * fails, the server may not accept REST for uploads (ProFTPD without AllowStoreRestart or IIS reply 451,
+ * 550 or 553), so segmented uploads are disabled and the file is stored again over a single connection.
+ * <p>
+ * The body is the content of the whole file in order. The first segment is written from it and the rest of it
+ * is read while the other segments are stored, so a checksum computed by the stream covers the whole file.
+ * The other segments are read from the local copy at their offsets.
+ */
+public class SegmentedUploader {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedUploader.class);
+
+    public static final String SEGMENTED_UPLOADER_METHOD_UPLOAD = "upload";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final RemoteClientPool pool;
+    private ExecutorService executor;
+    private final int segments;
+    private final long threshold;
+    private volatile boolean supported = true;
+
+    public SegmentedUploader(RemoteClientPool pool, int segments, long threshold) {
+        this.pool = pool;
+        this.segments = segments;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the threads that store the segments, which are created with the routes.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Indicates if a file of the given size is uploaded in segments.
+     */
+    public boolean accepts(long length) {
+        return supported && segments > 1 && length >= threshold;
+    }
+
+    @Handler @SuppressWarnings("unused") // used on Service routes
+    public void upload(Exchange exchange) throws Exception {
+        final File file = new File(exchange.getIn().getHeader(FilesService.HEADER_LOCAL_FILE_PATH, String.class));
+        final String path = exchange.getIn().getHeader(FilesService.HEADER_FILE_PATH, String.class);
+        final List<Segment> parts = split(file.length(), segments);
+        final AtomicBoolean aborted = new AtomicBoolean(false);
+        final boolean digested = exchange.getIn().getBody() instanceof ChecksumInputStream;
+
+        try (InputStream content = exchange.getIn().getMandatoryBody(InputStream.class)) {
+            final FTPClient client = pool.borrow();
+            final OutputStream os;
+            try {
+                createFolders(client, path);
+                os = open(client, path, 0);
+            } catch (Exception ex) {
+                pool.invalidate(client);
+                throw ex;
+            }
+
+            final List<Future<Void>> stores = new ArrayList<>();
+            for (Segment part : parts.subList(1, parts.size())) {
+                stores.add(executor.submit(() -> {
+                    storeSegment(file, path, part, aborted);
+                    return null;
+                }));
+            }
+
+            Exception failure = null;
+            try {
+                write(content, parts.get(0).getSize(), os, aborted);
+                complete(client, path, 0);
+                pool.release(client);
+                if (digested) {
+                    // the rest of the content goes through its checksum while the other segments are stored
+                    IOUtils.consume(content);
+                }
+            } catch (Exception ex) {
+                aborted.set(true);
+                IOUtils.closeQuietly(os);
+                pool.invalidate(client);
+                failure = ex;
+            }
+            // every segment is waited for, so none of them is still writing when the file is stored again
+            Exception segmentFailure = null;
+            for (Future<Void> store : stores) {
+                try {
+                    store.get();
+                } catch (ExecutionException ex) {
+                    if (segmentFailure == null && !(ex.getCause() instanceof AbortedException)) {
+                        segmentFailure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                    }
+                }
+            }
+            if (failure != null && (segmentFailure == null || !(failure instanceof AbortedException))) {
+                throw failure;
+            }
+            if (segmentFailure != null) {
+                supported = false;
+                logger.warn(String.format("Segment of file [%s] could not be stored, segmented uploads are disabled and the file is stored over a single connection: %s",
+                        path, segmentFailure.getMessage()));
+                if (failure != null && digested) {
+                    // the first segment was stopped before the content was read
+                    IOUtils.consume(content);
+                }
+                storeWhole(file, path);
+                return;
+            }
+        }
+        logger.info(String.format("File [%s] was uploaded in [%s] segments of [%s] bytes", path, parts.size(), parts.get(0).getSize()));
+    }
+
+    private void storeSegment(File file, String path, Segment part, AtomicBoolean aborted) throws IOException {
+        final FTPClient client = pool.borrow();
+        try {
+            final OutputStream os = open(client, path, part.getOffset());
+            try (InputStream is = new FileInputStream(file)) {
+                IOUtils.skipFully(is, part.getOffset());
+                write(is, part.getSize(), os, aborted);
+            } catch (IOException ex) {
+                IOUtils.closeQuietly(os);
+                throw ex;
+            }
+            complete(client, path, part.getOffset());
+            pool.release(client);
+        } catch (IOException | RuntimeException ex) {
+            aborted.set(true);
+            pool.invalidate(client);
+            throw ex;
+        }
+    }
+
+    private void storeWhole(File file, String path) throws IOException {
+        final FTPClient client = pool.borrow();
+        try (InputStream is = new FileInputStream(file)) {
+            if (!client.storeFile(path, is)) {
+                throw new IOException(String.format("It is not possible to store file [%s]: %s", path, client.getReplyString().trim()));
+            }
+            pool.release(client);
+        } catch (IOException | RuntimeException ex) {
+            pool.invalidate(client);
+            throw ex;
+        }
+    }
+
+    private static OutputStream open(FTPClient client, String path, long offset) throws IOException {
+        client.setRestartOffset(offset);
+        final OutputStream os;
+        try {
+            os = client.storeFileStream(path);
+        } finally {
+            client.setRestartOffset(0);
+        }
+        if (os == null) {
+            throw new IOException(String.format("It is not possible to store segment at [%s] of file [%s]: %s", offset, path, client.getReplyString().trim()));
+        }
+        return os;
+    }
+
+    private static void write(InputStream is, long size, OutputStream os, AtomicBoolean aborted) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            if (aborted.get()) {
+                // another segment failed, so the file will be stored again
+                throw new AbortedException();
+            }
+            final int read = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException(String.format("File ended [%s] bytes before the end of the segment", remaining));
+            }
+            os.write(buffer, 0, read);
+            remaining -= read;
+        }
+        os.close();
+    }
+
+    private static void complete(FTPClient client, String path, long offset) throws IOException {
+        if (!client.completePendingCommand()) {
+            throw new IOException(String.format("It is not possible to store segment at [%s] of file [%s]: %s", offset, path, client.getReplyString().trim()));
+        }
+    }
+
+    /**
+     * Splits a file in segments of the same size, except for the last one that can be smaller.
+     *
+     * @param length size of the file, more than 0
+     * @param count number of segments wanted; fewer are returned when the file is too small
+     * @return the segments, ordered by offset, the first one starting at 0
+     */
+    static List<Segment> split(long length, int count) {
+        final long segmentSize = (length + count - 1) / count;
+        final List<Segment> parts = new ArrayList<>();
+        for (long offset = 0; offset < length; offset += segmentSize) {
+            parts.add(new Segment(offset, Math.min(segmentSize, length - offset)));
+        }
+        return parts;
+    }
+
+    private static void createFolders(FTPClient client, String path) throws IOException {
+        final int last = path.lastIndexOf('/');
+        if (last <= 0) {
+            return;
+        }
+        // the producer of the endpoint creates the folders too; failures mean they already exist
+        int index = path.indexOf('/');
+        while (index > 0 && index <= last) {
+            client.makeDirectory(path.substring(0, index));
+            index = path.indexOf('/', index + 1);
+        }
+    }
+
+    static class Segment {
+        private final long offset;
+        private final long size;
+
+        Segment(long offset, long size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Stops a segment because another one failed.
+     */
+    private static class AbortedException extends IOException {
+        AbortedException() {
+            super("Segment was stopped because another one failed");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.slingr.service.ftp.components;
 
 import com.jcraft.jsch.ChannelSftp;
+import io.slingr.service.ftp.beans.Metrics;
 import org.apache.camel.component.file.GenericFileEndpoint;
 import org.apache.camel.component.file.remote.FtpUtils;
 import org.apache.camel.component.file.remote.SftpComponent;
@@ -14,10 +15,21 @@ import java.util.Map;
  */
 public class CustomSftpComponent extends SftpComponent {
 
+    private final Metrics metrics;
+
     public CustomSftpComponent() {
+        this(null);
+    }
+
+    public CustomSftpComponent(Metrics metrics) {
+        this.metrics = metrics;
         setEndpointClass(CustomSftpEndpoint.class);
     }
 
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     protected GenericFileEndpoint<ChannelSftp.LsEntry> buildFileEndpoint(String uri, String remaining, Map<String, Object> parameters) throws Exception {
         /*
@@ -14,7 +14,7 @@ public class CustomSftpEndpoint extends SftpEndpoint {
 
     @Override
     public RemoteFileOperations<ChannelSftp.LsEntry> createRemoteFileOperations() {
-        SftpOperations operations = new CustomSftpOperations(proxy);
+        SftpOperations operations = new CustomSftpOperations(proxy, ((CustomSftpComponent) getComponent()).getMetrics());
         operations.setEndpoint(this);
         return operations;
     }
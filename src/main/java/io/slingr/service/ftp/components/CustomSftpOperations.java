@@ -3,6 +3,8 @@ package io.slingr.service.ftp.components;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Proxy;
 import com.jcraft.jsch.Session;
+import io.slingr.service.ftp.beans.Metrics;
+import org.apache.camel.component.file.GenericFileOperationFailedException;
 import org.apache.camel.component.file.remote.RemoteFileConfiguration;
 import org.apache.camel.component.file.remote.SftpOperations;
 import org.apache.log4j.Logger;
@@ -13,8 +15,28 @@ import org.apache.log4j.Logger;
 public class CustomSftpOperations extends SftpOperations {
     private static final Logger logger = Logger.getLogger(CustomSftpOperations.class);
 
+    private final Metrics metrics;
+
     public CustomSftpOperations(Proxy proxy) {
+        this(proxy, null);
+    }
+
+    public CustomSftpOperations(Proxy proxy, Metrics metrics) {
         super(proxy);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean connect(RemoteFileConfiguration configuration) throws GenericFileOperationFailedException {
+        if (metrics == null || isConnected()) {
+            return super.connect(configuration);
+        }
+        final long start = System.nanoTime();
+        final boolean connected = super.connect(configuration);
+        if (connected) {
+            metrics.recordSince(Metrics.CONNECT_DURATION, start);
+        }
+        return connected;
     }
 
     @Override
@@ -0,0 +1,24 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Place where the attachments of emails that are too big to be inlined in the Json are written while they
+ * are read, so converting an email doesn't need to keep its attachments in memory.
+ */
+public interface AttachmentStore {
+
+    /**
+     * Stores the content of an attachment. The stream is consumed but not closed.
+     *
+     * @param fileName name of the attachment
+     * @param contentType content type of the attachment
+     * @param content decoded content of the attachment
+     * @return reference to the stored content, which is set in the 'file' field of the part
+     * @throws IOException if the content can't be read or stored
+     */
+    Json store(String fileName, String contentType, InputStream content) throws IOException;
+}
@@ -0,0 +1,194 @@
+package io.slingr.service.ftp.utils;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.activation.MimetypesFileTypeMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the content types of files.
+ * <p>
+ * Types are looked up by extension in the custom mappings first and then in the default tables of the JDK
+ * and JAF. Results are cached by extension, so the synchronized lookups of the default tables are done once
+ * per extension instead of once per file. When the extension is unknown, the type can be detected from the
+ * first bytes of the content.
+ */
+public final class ContentTypes {
+
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * Amount of bytes read to detect the type of the content.
+     */
+    public static final int SNIFF_SIZE = 512;
+
+    private static final int MAX_CACHED_EXTENSIONS = 1024;
+    // marks the extensions that are not in any table, as the map doesn't allow null values
+    private static final String UNKNOWN = "";
+
+    private static final Map<String, String> typesByExtension = new ConcurrentHashMap<>();
+    private static volatile Map<String, String> customTypes = Collections.emptyMap();
+
+    private ContentTypes() {
+    }
+
+    /**
+     * Sets the content types by extension that are used instead of the default ones.
+     *
+     * @param types map of extensions, with or without the leading dot, to content types
+     */
+    public static void setCustomTypes(Map<String, String> types) {
+        final Map<String, String> custom = new HashMap<>();
+        if (types != null) {
+            for (Map.Entry<String, String> type : types.entrySet()) {
+                final String extension = StringUtils.lowerCase(StringUtils.removeStart(StringUtils.trimToEmpty(type.getKey()), "."));
+                if (StringUtils.isNotEmpty(extension) && StringUtils.isNotBlank(type.getValue())) {
+                    custom.put(extension, type.getValue().trim());
+                }
+            }
+        }
+        customTypes = custom;
+        typesByExtension.clear();
+    }
+
+    /**
+     * Resolves the content type from the extension of the file name.
+     *
+     * @param fileName name of the file
+     * @return the content type, or null if the extension is unknown
+     */
+    public static String fromFileName(String fileName) {
+        final String extension = StringUtils.lowerCase(StringUtils.substringAfterLast(fileName, "."));
+        if (StringUtils.isEmpty(extension)) {
+            return null;
+        }
+        String type = typesByExtension.get(extension);
+        if (type == null) {
+            type = lookup(extension);
+            if (typesByExtension.size() < MAX_CACHED_EXTENSIONS) {
+                typesByExtension.put(extension, type);
+            }
+        }
+        return type.isEmpty() ? null : type;
+    }
+
+    private static String lookup(String extension) {
+        final String custom = customTypes.get(extension);
+        if (custom != null) {
+            return custom;
+        }
+        final String fileName = "file." + extension;
+        String type = URLConnection.guessContentTypeFromName(fileName);
+        if (StringUtils.isBlank(type)) {
+            type = MimetypesFileTypeMap.getDefaultFileTypeMap().getContentType(fileName);
+            if (DEFAULT_CONTENT_TYPE.equals(type)) {
+                // the default table returns this type for the extensions it doesn't know
+                type = null;
+            }
+        }
+        return StringUtils.isNotBlank(type) ? type : UNKNOWN;
+    }
+
+    /**
+     * Detects the content type from the first bytes of the stream, which is reset to where it was.
+     *
+     * @param is stream that supports mark and reset
+     * @return the content type, or null if it can't be detected
+     * @throws IOException if the stream can't be read
+     */
+    public static String fromContent(InputStream is) throws IOException {
+        final byte[] head = new byte[SNIFF_SIZE];
+        is.mark(SNIFF_SIZE);
+        int length = 0;
+        try {
+            int read;
+            while (length < head.length && (read = is.read(head, length, head.length - length)) != -1) {
+                length += read;
+            }
+        } finally {
+            is.reset();
+        }
+        return fromContent(head, length);
+    }
+
+    /**
+     * Detects the content type from the first bytes of a file.
+     *
+     * @param head first bytes of the file
+     * @param length amount of valid bytes
+     * @return the content type, or null if it can't be detected
+     */
+    public static String fromContent(byte[] head, int length) {
+        if (length <= 0) {
+            return null;
+        }
+        if (startsWith(head, length, 0x25, 0x50, 0x44, 0x46)) {
+            return "application/pdf";
+        }
+        if (startsWith(head, length, 0x89, 0x50, 0x4E, 0x47)) {
+            return "image/png";
+        }
+        if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, length, 0x47, 0x49, 0x46, 0x38)) {
+            return "image/gif";
+        }
+        if (startsWith(head, length, 0x50, 0x4B, 0x03, 0x04)) {
+            return "application/zip";
+        }
+        if (startsWith(head, length, 0x1F, 0x8B)) {
+            return "application/gzip";
+        }
+        int i = startsWith(head, length, 0xEF, 0xBB, 0xBF) ? 3 : 0;
+        if (!isText(head, i, length)) {
+            return null;
+        }
+        while (i < length && Character.isWhitespace(head[i])) {
+            i++;
+        }
+        if (i < length) {
+            final byte first = head[i];
+            if (first == '{' || first == '[') {
+                return "application/json";
+            }
+            if (first == '<') {
+                final String start = new String(head, i, Math.min(length - i, 64), StandardCharsets.US_ASCII).toLowerCase();
+                return start.startsWith("<!doctype html") || start.startsWith("<html") ? "text/html" : "application/xml";
+            }
+        }
+        return "text/plain";
+    }
+
+    private static boolean startsWith(byte[] head, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((head[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Text has no control characters other than whitespaces. Bytes of multi-byte characters are accepted.
+     */
+    private static boolean isText(byte[] head, int from, int length) {
+        for (int i = from; i < length; i++) {
+            final int b = head[i] & 0xFF;
+            if (b < 0x20 && b != '\n' && b != '\r' && b != '\t' && b != '\f') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
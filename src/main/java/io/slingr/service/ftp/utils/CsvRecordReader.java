@@ -0,0 +1,112 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the lines of a CSV file as records. The first line has the names of the columns, which are the
+ * keys of the records. Quoted fields can contain delimiters, line breaks and escaped quotes ("").
+ */
+public class CsvRecordReader implements RecordReader {
+
+    private static final char DEFAULT_DELIMITER = ',';
+
+    private final BufferedReader reader;
+    private final char delimiter;
+    private List<String> columns;
+
+    public CsvRecordReader(Reader reader) {
+        this(reader, DEFAULT_DELIMITER);
+    }
+
+    public CsvRecordReader(Reader reader, char delimiter) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public Json next() throws IOException {
+        if (columns == null) {
+            columns = readRow();
+            if (columns == null) {
+                return null;
+            }
+        }
+        final List<String> row = readRow();
+        if (row == null) {
+            return null;
+        }
+        final Json record = Json.map();
+        for (int i = 0; i < row.size(); i++) {
+            final String column = i < columns.size() ? columns.get(i) : "column" + (i + 1);
+            record.set(column, row.get(i));
+        }
+        return record;
+    }
+
+    /**
+     * Reads the fields of the next line that is not empty.
+     */
+    private List<String> readRow() throws IOException {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean read = false;
+        while (true) {
+            final int c = reader.read();
+            if (c == -1) {
+                if (!read) {
+                    return null;
+                }
+                fields.add(field.toString());
+                break;
+            }
+            read = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                if (fields.isEmpty() && field.length() == 0) {
+                    // empty line
+                    read = false;
+                    continue;
+                }
+                fields.add(field.toString());
+                break;
+            } else {
+                field.append((char) c);
+            }
+        }
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -5,19 +5,24 @@ import io.slingr.services.utils.Base64Utils;
 import io.slingr.services.utils.Json;
 import io.slingr.services.utils.MapsUtils;
 import net.htmlparser.jericho.Source;
+import org.apache.camel.Exchange;
 import org.apache.camel.StreamCache;
 import org.apache.camel.converter.stream.StreamCacheConverter;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.FastDateFormat;
 import org.apache.log4j.Logger;
 
-import javax.activation.MimetypesFileTypeMap;
 import javax.mail.*;
 import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.URLConnection;
+import java.io.SequenceInputStream;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,11 +72,43 @@ public class EmailHelper {
     private static final String htmlBlockQuotedTextBeginning = "\\<blockquote.*id.*replyBlockquote";
     private static final Pattern HTML_BLOCKQUOTED_SEPARATOR_PATTERN = Pattern.compile(htmlBlockQuotedTextBeginning);
     public static final int ATTACHMENT_MAX_SIZE = 1024 * 1024 * 2;
+    /**
+     * Name of the {@link AttachmentStore} in the registry of the context that converts the emails.
+     */
+    public static final String ATTACHMENT_STORE = "ftpAttachmentStore";
+
+    // Separators: first characters of each separator and the patterns that start with them. The Gmail and iPhone
+    // separators can also start with the time instead of 'On', which is found by the colon after its first digits
+    private static final String[] SEPARATOR_ANCHORS = {"-", "On", "From:", "<blockquote", ":"};
+    private static final Pattern[][] SEPARATOR_PATTERNS = {
+            {ORIGINAL_MESSAGE_SEPARATOR_PATTERN},
+            {GMAIL_SEPARATOR_PATTERN, IPHONE_SEPARATOR_PATTERN},
+            {OUTLOOK_SEPARATOR_PATTERN},
+            {HTML_BLOCKQUOTED_SEPARATOR_PATTERN},
+            {GMAIL_SEPARATOR_PATTERN, IPHONE_SEPARATOR_PATTERN}
+    };
+    private static final int TIME_ANCHOR = 4;
+    private static final int SEPARATOR_WINDOW = 1024;
+    private static final long STRIP_TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
 
     // Pattern: Email check
     private static final String emailAddressPattern = "^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,}$";
     private static final Pattern EMAIL_ADDRESS_PATTERN = Pattern.compile(emailAddressPattern);
 
+    /**
+     * Finds where the attachments bigger than the max size are stored, which is bound to the context of the
+     * exchange, so each service instance uploads them to its own app.
+     *
+     * @param exchange exchange being converted, can be null
+     * @return the store, or null if there is none and those attachments are skipped
+     */
+    public static AttachmentStore getAttachmentStore(Exchange exchange) {
+        if (exchange == null || exchange.getContext() == null) {
+            return null;
+        }
+        return exchange.getContext().getRegistry().lookupByNameAndType(ATTACHMENT_STORE, AttachmentStore.class);
+    }
+
     public static boolean isValidEmail(String value) {
         if(StringUtils.isNotBlank(value)){
             Matcher matcher = EMAIL_ADDRESS_PATTERN.matcher(value.toUpperCase());
@@ -80,53 +117,92 @@ public class EmailHelper {
         return false;
     }
 
+    /**
+     * Removes the quoted messages of a reply. The body is scanned once looking for the first characters of
+     * the separators, and the separator patterns are only checked in a bounded window after each of them,
+     * so long bodies don't backtrack over the whole text. The body is cut at the first separator found.
+     * When the scan takes longer than the time budget, the body is returned without removing anything.
+     */
     public static String stripOutOriginalMessage(String email) {
         if (email == null) {
             return null;
         }
 
         // replace new lines
-        email = email.replaceAll("\\r", "");
-
-        // try to match the original message separator with dashes
-        int startIndex;
-        Matcher matcher = ORIGINAL_MESSAGE_SEPARATOR_PATTERN.matcher(email);
-        if (matcher.find()) {
-            startIndex = matcher.start();
-            email = email.substring(0, startIndex);
-        }
+        email = StringUtils.remove(email, '\r');
 
-        // try GMail separator
-        matcher = GMAIL_SEPARATOR_PATTERN.matcher(email);
-        if (matcher.find()) {
-            startIndex = matcher.start();
-            email = email.substring(0, startIndex);
+        final int length = email.length();
+        final int[] nextAnchors = new int[SEPARATOR_ANCHORS.length];
+        for (int i = 0; i < SEPARATOR_ANCHORS.length; i++) {
+            nextAnchors[i] = email.indexOf(SEPARATOR_ANCHORS[i]);
         }
-
-        // try Outlook separator
-        matcher = OUTLOOK_SEPARATOR_PATTERN.matcher(email);
-        if (matcher.find()) {
-            startIndex = matcher.start();
-            // to make this safer
-            email = email.substring(0, startIndex);
+        final Matcher[][] matchers = new Matcher[SEPARATOR_PATTERNS.length][];
+        final long deadline = System.nanoTime() + STRIP_TIME_BUDGET_NANOS;
+        while (true) {
+            // the closest anchor is checked first, so the body is cut at the first separator
+            int anchor = -1;
+            for (int i = 0; i < nextAnchors.length; i++) {
+                if (nextAnchors[i] >= 0 && (anchor < 0 || nextAnchors[i] < nextAnchors[anchor])) {
+                    anchor = i;
+                }
+            }
+            if (anchor < 0) {
+                break;
+            }
+            if (System.nanoTime() > deadline) {
+                logger.warn(String.format("Time to look for the original message exceeded in email of [%s] chars", length));
+                break;
+            }
+            final int index = nextAnchors[anchor];
+            final int start = separatorStart(email, index, anchor, matchers);
+            if (start >= 0) {
+                email = email.substring(0, start);
+                break;
+            }
+            nextAnchors[anchor] = email.indexOf(SEPARATOR_ANCHORS[anchor], index + 1);
         }
 
-        // try new iPhone separator
-        matcher = IPHONE_SEPARATOR_PATTERN.matcher(email);
-        if (matcher.find()) {
-            startIndex = matcher.start();
-            email = email.substring(0, startIndex);
-        }
+        // finally, trim the email
+        return email.trim();
+    }
 
-        // try HTML blockquote separator
-        matcher = HTML_BLOCKQUOTED_SEPARATOR_PATTERN.matcher(email);
-        if (matcher.find()) {
-            startIndex = matcher.start();
-            email = email.substring(0, startIndex);
+    /**
+     * Checks if there is a separator at the anchor found at the given index.
+     *
+     * @return where the separator starts, or -1 if there is none
+     */
+    private static int separatorStart(String email, int index, int anchor, Matcher[][] matchers) {
+        if (anchor == 0 && index > 0 && email.charAt(index - 1) == '-') {
+            // the separator with dashes is checked only at the beginning of the dashes
+            return -1;
         }
+        if (anchor == TIME_ANCHOR) {
+            // the hour has one or two digits before the colon
+            for (int start = Math.max(0, index - 2); start < index; start++) {
+                if (Character.isDigit(email.charAt(start)) && isSeparator(email, start, anchor, matchers)) {
+                    return start;
+                }
+            }
+            return -1;
+        }
+        return isSeparator(email, index, anchor, matchers) ? index : -1;
+    }
 
-        // finally, trim the email
-        return email.trim();
+    private static boolean isSeparator(String email, int index, int anchor, Matcher[][] matchers) {
+        if (matchers[anchor] == null) {
+            matchers[anchor] = new Matcher[SEPARATOR_PATTERNS[anchor].length];
+            for (int i = 0; i < matchers[anchor].length; i++) {
+                matchers[anchor][i] = SEPARATOR_PATTERNS[anchor][i].matcher(email);
+            }
+        }
+        final int windowEnd = Math.min(email.length(), index + SEPARATOR_WINDOW);
+        for (Matcher matcher : matchers[anchor]) {
+            matcher.region(index, windowEnd);
+            if (matcher.lookingAt()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static String parseEmail(String email) {
@@ -248,15 +324,27 @@ public class EmailHelper {
 
     public static String getContentType(String contentType, String fileName){
         if(StringUtils.isBlank(contentType)){
-            contentType = URLConnection.guessContentTypeFromName(fileName);
+            contentType = ContentTypes.fromFileName(fileName);
             if(StringUtils.isBlank(contentType)) {
-                contentType = MimetypesFileTypeMap.getDefaultFileTypeMap().getContentType(fileName);
+                contentType = ContentTypes.DEFAULT_CONTENT_TYPE;
             }
         }
         return contentType;
     }
 
     public static Json convertMultipart(Multipart multipart) {
+        return convertMultipart(multipart, null);
+    }
+
+    /**
+     * Converts the email to Json. Attachments bigger than the max size are written to the store while they
+     * are read, or skipped if there is no store.
+     *
+     * @param multipart email to convert
+     * @param attachmentStore store for big attachments, or null to skip them
+     * @return the email converted to Json
+     */
+    public static Json convertMultipart(Multipart multipart, AttachmentStore attachmentStore) {
         final Json response = Json.map();
         if(multipart != null) {
             String contentType = multipart.getContentType();
@@ -269,7 +357,7 @@ public class EmailHelper {
 
                 final int partsSize = multipart.getCount();
                 for (int i = 0; i < partsSize; i++) {
-                    final Json part = convertPart(multipart.getBodyPart(i), true, ATTACHMENT_MAX_SIZE);
+                    final Json part = convertPart(multipart.getBodyPart(i), true, ATTACHMENT_MAX_SIZE, attachmentStore);
                     if(!part.isEmpty()) {
                         parts.add(part);
 
@@ -299,42 +387,69 @@ public class EmailHelper {
         return response;
     }
 
-    @SuppressWarnings("unchecked")
     public static Json convertPart(Part part, boolean expandContent, long attachmentMaxSize) throws MessagingException {
+        return convertPart(part, expandContent, attachmentMaxSize, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Json convertPart(Part part, boolean expandContent, long attachmentMaxSize, AttachmentStore attachmentStore) throws MessagingException {
         final Json json = Json.map();
         if(part != null) {
             boolean attachment = false;
             boolean base64 = false;
             String stringContent = null;
             Json objectContent = null;
+            Json storedFile = null;
 
             String contentType = part.getContentType();
             final String contentDisposition = part.getDisposition();
             final int size = part.getSize();
 
             if(expandContent && part instanceof BodyPart) {
+                final boolean attachmentPart = StringUtils.isNotBlank(contentDisposition) && (contentDisposition.equalsIgnoreCase("ATTACHMENT") || contentDisposition.equalsIgnoreCase("INLINE"));
                 if (size > attachmentMaxSize) {
-                    logger.warn(String.format("Attachment size [%s] is too big", size));
+                    if (attachmentPart && attachmentStore != null) {
+                        attachment = true;
+                        try (InputStream is = part.getInputStream()) {
+                            storedFile = storeAttachment(attachmentStore, part, contentType, is);
+                        } catch (Exception e) {
+                            logger.warn("Exception when try to store the attachment of the email", e);
+                        }
+                    } else {
+                        logger.warn(String.format("Attachment size [%s] is too big", size));
+                    }
                 } else {
                     try {
                         final Object contentObject = part.getContent();
                         if (contentObject != null) {
 
-                            if (StringUtils.isNotBlank(contentDisposition) && (contentDisposition.equalsIgnoreCase("ATTACHMENT") || contentDisposition.equalsIgnoreCase("INLINE"))) {
+                            if (attachmentPart) {
                                 attachment = true;
 
                                 if (contentObject instanceof StreamCache) {
                                     final String s = new String(StreamCacheConverter.convertToByteArray((StreamCache) contentObject, null));
                                     stringContent = ToJsonConverter.fromObject(s, null).toString();
                                 } else if (contentObject instanceof InputStream) {
-                                    stringContent = Base64Utils.encode((InputStream) contentObject);
-                                    base64 = true;
+                                    // the size is not always known, so only the allowed amount of bytes is kept in memory
+                                    final InputStream is = (InputStream) contentObject;
+                                    final byte[] head = IOUtils.toByteArray(new BoundedInputStream(is, attachmentMaxSize + 1));
+                                    if (head.length <= attachmentMaxSize) {
+                                        stringContent = Base64Utils.encode(new ByteArrayInputStream(head));
+                                        base64 = true;
+                                    } else if (attachmentStore != null) {
+                                        storedFile = storeAttachment(attachmentStore, part, contentType, new SequenceInputStream(new ByteArrayInputStream(head), is));
+                                    } else {
+                                        logger.warn(String.format("Attachment size is bigger than [%s]", attachmentMaxSize));
+                                    }
                                 } else {
                                     stringContent = contentObject.toString();
                                 }
                             } else {
                                 try {
-                                    objectContent = ToJsonConverter.baseFromObject(contentObject, null);
+                                    // nested emails keep the store of the one that contains them
+                                    objectContent = contentObject instanceof Multipart
+                                            ? convertMultipart((Multipart) contentObject, attachmentStore)
+                                            : ToJsonConverter.baseFromObject(contentObject, null);
                                 } catch (Exception e) {
                                     stringContent = contentObject.toString();
                                 }
@@ -419,6 +534,7 @@ public class EmailHelper {
 
             json.setIfNotEmpty("attachment", attachment);
             json.setIfNotEmpty("base64", base64);
+            json.setIfNotEmpty("file", storedFile);
 
             if(StringUtils.isNotBlank(contentType)) {
                 if(StringUtils.isNotBlank(stringContent)){
@@ -446,6 +562,10 @@ public class EmailHelper {
         return json;
     }
 
+    private static Json storeAttachment(AttachmentStore attachmentStore, Part part, String contentType, InputStream content) throws IOException, MessagingException {
+        return attachmentStore.store(part.getFileName(), getContentType(contentType), content);
+    }
+
     public static List<Json> processReceiversLine(String value){
         final List<Json> receiver = new ArrayList<>();
         if(StringUtils.isNotBlank(value)){
@@ -0,0 +1,272 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts URL encoded forms to Json in a single pass.
+ * <p>
+ * Fields are separated by '&amp;', unless it starts an entity like '&amp;amp;', and fields without '=' are
+ * ignored. Keys with brackets, like 'a[b][c]', are nested while the form is read, so the cost is linear in
+ * the size of the form. Percent escapes are decoded into a byte buffer that is reused for all the fields,
+ * and values are only converted to numbers, booleans or Json when they look like one.
+ */
+public final class FormDecoder {
+
+    private byte[] buffer = new byte[64];
+
+    private FormDecoder() {
+    }
+
+    /**
+     * Converts the URL encoded form to Json.
+     *
+     * @param form URL encoded form
+     * @return the fields of the form
+     * @throws IllegalArgumentException if a key is used both for a value and for nested fields
+     */
+    public static Json toJson(String form) {
+        if (StringUtils.isBlank(form)) {
+            return Json.map();
+        }
+        return Json.fromMap(new FormDecoder().decode(form));
+    }
+
+    private Map<String, Object> decode(String form) {
+        final Map<String, Object> response = new LinkedHashMap<>();
+        final int length = form.length();
+        int start = 0;
+        while (start <= length) {
+            final int end = nextSeparator(form, start);
+            final int equals = form.indexOf('=', start);
+            if (equals >= 0 && equals < end) {
+                final String key = decodeOrRaw(form, start, equals);
+                final String value = decodeOrRaw(form, equals + 1, end);
+                putField(response, key, coerce(value));
+            }
+            start = end + 1;
+        }
+        return response;
+    }
+
+    private static int nextSeparator(String form, int from) {
+        int index = form.indexOf('&', from);
+        while (index >= 0 && isEntity(form, index)) {
+            index = form.indexOf('&', index + 1);
+        }
+        return index >= 0 ? index : form.length();
+    }
+
+    private static boolean isEntity(String form, int ampersand) {
+        int i = ampersand + 1;
+        while (i < form.length()) {
+            final char c = form.charAt(i);
+            if (c == '#' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                i++;
+            } else {
+                return c == ';' && i > ampersand + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes the text, or returns it as it is when it has invalid escapes.
+     */
+    private String decodeOrRaw(String form, int from, int to) {
+        try {
+            return decode(form, from, to);
+        } catch (IllegalArgumentException ex) {
+            return form.substring(from, to);
+        }
+    }
+
+    /**
+     * Decodes '+' and percent escapes as UTF-8. The other characters are encoded to UTF-8 in the same
+     * buffer, so escaped multi-byte sequences mixed with plain characters are decoded correctly.
+     */
+    private String decode(String form, int from, int to) {
+        int i = from;
+        while (i < to && form.charAt(i) != '%' && form.charAt(i) != '+') {
+            i++;
+        }
+        if (i == to) {
+            // nothing to decode
+            return form.substring(from, to);
+        }
+        // at most 3 bytes per character, as surrogate pairs take 4 bytes for 2 characters
+        final int capacity = (to - from) * 3;
+        if (buffer.length < capacity) {
+            buffer = new byte[Math.max(capacity, buffer.length * 2)];
+        }
+        final byte[] bytes = buffer;
+        int n = 0;
+        for (i = from; i < to; i++) {
+            final char c = form.charAt(i);
+            if (c == '+') {
+                bytes[n++] = ' ';
+            } else if (c == '%') {
+                if (i + 2 >= to) {
+                    throw new IllegalArgumentException("Incomplete escape at the end of the text");
+                }
+                bytes[n++] = (byte) ((hexValue(form.charAt(i + 1)) << 4) | hexValue(form.charAt(i + 2)));
+                i += 2;
+            } else if (c < 0x80) {
+                bytes[n++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[n++] = (byte) (0xC0 | (c >> 6));
+                bytes[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(form.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, form.charAt(++i));
+                bytes[n++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[n++] = '?';
+            } else {
+                bytes[n++] = (byte) (0xE0 | (c >> 12));
+                bytes[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException(String.format("Invalid escape character [%s]", c));
+    }
+
+    /**
+     * Values are kept as strings unless they look like a number, a boolean or a Json object or array.
+     * Numbers with leading zeros, like zip codes, are kept as strings.
+     */
+    private static Object coerce(String value) {
+        if (value.isEmpty()) {
+            return value;
+        }
+        final char c = value.charAt(0);
+        if (c == '{' || c == '[') {
+            try {
+                return Json.parse(value);
+            } catch (Exception ex) {
+                return value;
+            }
+        }
+        if (c == 't' && "true".equals(value)) {
+            return true;
+        }
+        if (c == 'f' && "false".equals(value)) {
+            return false;
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            return parseNumber(value);
+        }
+        return value;
+    }
+
+    /**
+     * Parses the value when it is a Json number, or returns it as it is.
+     */
+    private static Object parseNumber(String value) {
+        final int length = value.length();
+        int i = value.charAt(0) == '-' ? 1 : 0;
+        final int integerStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+        final int integerDigits = i - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && value.charAt(integerStart) == '0')) {
+            return value;
+        }
+        boolean decimal = false;
+        if (i < length && value.charAt(i) == '.') {
+            final int fractionStart = ++i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == fractionStart) {
+                return value;
+            }
+            decimal = true;
+        }
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+                i++;
+            }
+            final int exponentStart = i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == exponentStart) {
+                return value;
+            }
+            decimal = true;
+        }
+        if (i < length) {
+            return value;
+        }
+        try {
+            return decimal ? (Object) Double.parseDouble(value) : (Object) Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            // too big for a long
+            return value;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putField(Map<String, Object> response, String key, Object value) {
+        if (key.indexOf('[') < 0) {
+            response.put(key, value);
+            return;
+        }
+        // segments are separated by groups of brackets: 'a[b][c]' is 'a' -> 'b' -> 'c'
+        Map<String, Object> current = response;
+        String segment = null;
+        final int length = key.length();
+        int i = 0;
+        while (i < length) {
+            int j = i;
+            while (j < length && key.charAt(j) != '[' && key.charAt(j) != ']') {
+                j++;
+            }
+            final String next = key.substring(i, j);
+            while (j < length && (key.charAt(j) == '[' || key.charAt(j) == ']')) {
+                j++;
+            }
+            if (segment != null) {
+                final Object child = current.get(segment);
+                if (child == null) {
+                    final Map<String, Object> map = new LinkedHashMap<>();
+                    current.put(segment, map);
+                    current = map;
+                } else if (child instanceof Map) {
+                    current = (Map<String, Object>) child;
+                } else {
+                    throw new IllegalArgumentException(String.format("Field [%s] of the form is not an object", key));
+                }
+            }
+            segment = next;
+            i = j;
+        }
+        current.put(segment, value);
+    }
+}
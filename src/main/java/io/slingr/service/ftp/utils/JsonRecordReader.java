@@ -0,0 +1,131 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the elements of a top level Json array as records. When the content doesn't start with an array,
+ * each top level value is a record, which covers newline delimited Json (NDJSON).
+ * <p>
+ * Values are delimited by tracking the nesting and the strings, and only the text of the current value is
+ * parsed. Values that are not objects are returned in the field 'value' of the record.
+ */
+public class JsonRecordReader implements RecordReader {
+
+    private final BufferedReader reader;
+    private final StringBuilder value = new StringBuilder();
+    private boolean started = false;
+    private boolean array = false;
+    private boolean done = false;
+    private int pending = -1;
+
+    public JsonRecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public Json next() throws IOException {
+        if (done) {
+            return null;
+        }
+        int c = skipWhitespaces();
+        if (!started) {
+            started = true;
+            if (c == '[') {
+                array = true;
+                c = skipWhitespaces();
+            }
+        }
+        while (c == ',') {
+            c = skipWhitespaces();
+        }
+        if (c == -1 || (array && c == ']')) {
+            done = true;
+            return null;
+        }
+
+        value.setLength(0);
+        int depth = 0;
+        boolean string = false;
+        boolean escaped = false;
+        while (c != -1) {
+            if (string) {
+                value.append((char) c);
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    string = false;
+                    if (depth == 0) {
+                        break;
+                    }
+                }
+            } else if (c == '"') {
+                string = true;
+                value.append((char) c);
+            } else if (c == '{' || c == '[') {
+                depth++;
+                value.append((char) c);
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    // end of the top level array
+                    pending = c;
+                    break;
+                }
+                depth--;
+                value.append((char) c);
+                if (depth == 0) {
+                    break;
+                }
+            } else if (depth == 0 && (c == ',' || Character.isWhitespace(c))) {
+                pending = c;
+                break;
+            } else {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+        if (string || depth > 0) {
+            throw new IOException(String.format("Incomplete Json value at the end of the content [%s]", abbreviate(value)));
+        }
+        return toRecord(value.toString());
+    }
+
+    private int skipWhitespaces() throws IOException {
+        int c;
+        if (pending != -1) {
+            c = pending;
+            pending = -1;
+        } else {
+            c = reader.read();
+        }
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = reader.read();
+        }
+        return c;
+    }
+
+    private static Json toRecord(String value) throws IOException {
+        try {
+            if (value.startsWith("{")) {
+                return Json.parse(value);
+            }
+            return Json.parse("{\"value\":" + value + "}");
+        } catch (Exception ex) {
+            throw new IOException(String.format("Invalid Json value [%s]: %s", abbreviate(value), ex.getMessage()), ex);
+        }
+    }
+
+    private static String abbreviate(CharSequence value) {
+        return value.length() > 100 ? value.subSequence(0, 100) + "..." : value.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,20 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of a file one at a time, so only the current record is kept in memory.
+ */
+public interface RecordReader extends Closeable {
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record or null if there are no more records
+     * @throws IOException if the content can't be read or parsed
+     */
+    Json next() throws IOException;
+}
@@ -0,0 +1,117 @@
+package io.slingr.service.ftp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Replacements of regular expressions that are compiled once into a single pattern and applied in one pass.
+ * <p>
+ * At each position the first rule that matches is applied, in the order the rules were given, and the
+ * replaced text is not checked again by the other rules. Replacements can reference the groups of their own
+ * rule with '$1', '$2', etc. Patterns can't use numbered back references, as groups are renumbered when
+ * they are combined.
+ */
+public final class ReplacementRules {
+
+    public static final ReplacementRules NONE = new ReplacementRules(null, new int[0], new String[0]);
+
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("(\\\\.)|\\$(\\d)");
+
+    private final Pattern pattern;
+    private final int[] ruleGroups;
+    private final String[] replacements;
+
+    private ReplacementRules(Pattern pattern, int[] ruleGroups, String[] replacements) {
+        this.pattern = pattern;
+        this.ruleGroups = ruleGroups;
+        this.replacements = replacements;
+    }
+
+    /**
+     * Compiles the rules.
+     *
+     * @param rules map of regular expressions to their replacements, in the order they have to be checked
+     * @return the compiled rules
+     * @throws IllegalArgumentException if any regular expression or replacement is invalid
+     */
+    public static ReplacementRules compile(Map<String, String> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return NONE;
+        }
+        final StringBuilder combined = new StringBuilder();
+        final List<String> replacements = new ArrayList<>();
+        final int[] ruleGroups = new int[rules.size()];
+        int group = 1;
+        int rule = 0;
+        for (Map.Entry<String, String> entry : rules.entrySet()) {
+            final int groupCount;
+            try {
+                groupCount = Pattern.compile(entry.getKey()).matcher("").groupCount();
+            } catch (PatternSyntaxException ex) {
+                throw new IllegalArgumentException(String.format("Invalid replacement pattern [%s]: %s", entry.getKey(), ex.getDescription()), ex);
+            }
+            if (combined.length() > 0) {
+                combined.append('|');
+            }
+            combined.append('(').append(entry.getKey()).append(')');
+            ruleGroups[rule++] = group;
+            replacements.add(shiftGroupReferences(entry.getValue() != null ? entry.getValue() : "", group, groupCount, entry.getKey()));
+            group += groupCount + 1;
+        }
+        return new ReplacementRules(Pattern.compile(combined.toString()), ruleGroups, replacements.toArray(new String[0]));
+    }
+
+    public boolean isEmpty() {
+        return pattern == null;
+    }
+
+    public String apply(String value) {
+        if (pattern == null || value == null) {
+            return value;
+        }
+        final Matcher matcher = pattern.matcher(value);
+        if (!matcher.find()) {
+            return value;
+        }
+        final StringBuffer sb = new StringBuffer(value.length());
+        do {
+            matcher.appendReplacement(sb, replacements[matchedRule(matcher)]);
+        } while (matcher.find());
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private int matchedRule(Matcher matcher) {
+        for (int i = 0; i < ruleGroups.length; i++) {
+            if (matcher.start(ruleGroups[i]) >= 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Moves the group references of a replacement to the groups of its rule inside of the combined pattern.
+     */
+    private static String shiftGroupReferences(String replacement, int ruleGroup, int groupCount, String rule) {
+        final Matcher matcher = GROUP_REFERENCE.matcher(replacement);
+        final StringBuffer sb = new StringBuffer();
+        while (matcher.find()) {
+            if (matcher.group(1) != null) {
+                matcher.appendReplacement(sb, Matcher.quoteReplacement(matcher.group(1)));
+            } else {
+                final int reference = Integer.parseInt(matcher.group(2));
+                if (reference > groupCount) {
+                    throw new IllegalArgumentException(String.format("Invalid group reference [$%s] in the replacement of [%s]", reference, rule));
+                }
+                matcher.appendReplacement(sb, Matcher.quoteReplacement("$" + (ruleGroup + reference)));
+            }
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+}
@@ -14,13 +14,14 @@ import org.slf4j.LoggerFactory;
 
 import javax.mail.Multipart;
 import javax.mail.internet.MimeMultipart;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URLDecoder;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Converts the inputs to Json.
@@ -29,7 +30,19 @@ import java.util.Map;
 public final class ToJsonConverter {
     private static final Logger logger = LoggerFactory.getLogger(ToJsonConverter.class);
 
-    private static final Json stringReplaces = Json.map();
+    private static volatile ReplacementRules stringReplaces = ReplacementRules.NONE;
+    private static final int MAX_CACHED_EXTENSIONS = 256;
+    private static final Map<String, DetectedFormat> formatsByExtension = new ConcurrentHashMap<>();
+
+    /**
+     * Sets the replacements applied to the strings before converting them.
+     *
+     * @param replacements map of regular expressions to their replacements, in the order they have to be checked
+     * @throws IllegalArgumentException if any regular expression is invalid
+     */
+    public static void setStringReplaces(Map<String, String> replacements) {
+        stringReplaces = ReplacementRules.compile(replacements);
+    }
 
     @Converter(allowNull = true)
     public static Json fromMultipart(MimeMultipart message, Exchange exchange) {
@@ -65,7 +78,7 @@ public final class ToJsonConverter {
         } else if (message instanceof InputStream) {
             return fromInputStream((InputStream) message, exchange);
         } else if (message instanceof Multipart) {
-            return fromMultipart((Multipart) message);
+            return fromMultipart((Multipart) message, exchange);
         } else if (message != null) {
             return fromString(message.toString());
         }
@@ -111,6 +124,20 @@ public final class ToJsonConverter {
 
     @Converter(allowNull = true)
     public static Json fromInputStream(InputStream is, Exchange exchange) {
+        final String contentType = getContentType(exchange);
+        if (StringUtils.isNotBlank(contentType) && ContentTypeFormat.isXmlContentType(contentType)) {
+            // XML documents are converted while they are read, without loading them in a String first. When there
+            // are replacements the document has to be read before, but it is converted in the same way
+            try {
+                if (!stringReplaces.isEmpty()) {
+                    return XmlHelper.xmlToJson(new StringReader(stringReplaces.apply(IOUtils.toString(is, StandardCharsets.UTF_8))));
+                }
+                return XmlHelper.xmlToJson(is.markSupported() ? is : new BufferedInputStream(is));
+            } catch (Exception e) {
+                logger.warn("Error parsing JSON from XML document in input stream", e);
+                return null;
+            }
+        }
         try {
             final String value = IOUtils.toString(is, StandardCharsets.UTF_8);
             return convertString(value, exchange);
@@ -121,19 +148,27 @@ public final class ToJsonConverter {
     }
 
     @Converter(allowNull = true)
-    public static Json fromMultipart(Multipart multipart) {
-        return EmailHelper.convertMultipart(multipart);
+    public static Json fromMultipart(Multipart multipart, Exchange exchange) {
+        return EmailHelper.convertMultipart(multipart, EmailHelper.getAttachmentStore(exchange));
     }
 
     public static Json convertString(String value, Exchange exchange) {
-        String contentType = null;
+        String fileExtension = null;
+        if(exchange != null){
+            final String fileName = exchange.getIn().getHeader(Exchange.FILE_NAME_ONLY, String.class);
+            fileExtension = StringUtils.lowerCase(StringUtils.substringAfterLast(fileName, "."));
+        }
+        return convertString(value, getContentType(exchange), fileExtension, true);
+    }
+
+    private static String getContentType(Exchange exchange) {
         if(exchange != null){
             final Object contentTypeObject = exchange.getIn().getHeaders().get(Exchange.CONTENT_TYPE);
             if (contentTypeObject instanceof String) {
-                contentType = (String) contentTypeObject;
+                return (String) contentTypeObject;
             }
         }
-        return convertString(value, contentType);
+        return null;
     }
 
     public static Json convertString(String value, String contentType) {
@@ -141,11 +176,11 @@ public final class ToJsonConverter {
     }
 
     public static Json convertString(String value, String contentType, boolean showErrors) {
-        if(!stringReplaces.isEmpty()){
-            for (String pattern : stringReplaces.keys()) {
-                value = value.replaceAll(pattern, stringReplaces.string(pattern));
-            }
-        }
+        return convertString(value, contentType, null, showErrors);
+    }
+
+    private static Json convertString(String value, String contentType, String fileExtension, boolean showErrors) {
+        value = stringReplaces.apply(value);
 
         Json response = null;
 
@@ -187,69 +222,88 @@ public final class ToJsonConverter {
         }
 
         if(response == null){
-            // generic case, try to convert the string to JSON
-            try {
-                response = Json.parse(value);
-            } catch (Exception ex) {
+            // generic case, try first the format detected from the content and then the rest of them in the usual
+            // order: JSON, XML and URL encoded form. When the content is ambiguous, the format that worked for
+            // previous files with the same extension is tried first
+            DetectedFormat firstFormat = detectFormat(value);
+            if (firstFormat == DetectedFormat.UNKNOWN && StringUtils.isNotBlank(fileExtension)) {
+                firstFormat = formatsByExtension.getOrDefault(fileExtension, DetectedFormat.UNKNOWN);
+            }
+            for (DetectedFormat format : firstFormat.attempts) {
                 try {
-                    response = XmlHelper.xmlToJson(value);
-                } catch (Exception e2) {
-                    try{
-                        response = convertFormToJson(value);
-                    } catch (Exception ex3) {
-                        if(showErrors) {
-                            logger.warn(String.format("Error parsing JSON from input stream [%s]", value));
-                        }
-                    }
+                    response = format.parse(value);
+                } catch (Exception ex) {
+                    continue;
                 }
+                if (StringUtils.isNotBlank(fileExtension) && formatsByExtension.size() < MAX_CACHED_EXTENSIONS) {
+                    formatsByExtension.put(fileExtension, format);
+                }
+                break;
+            }
+            if(response == null && showErrors) {
+                logger.warn(String.format("Error parsing JSON from input stream [%s]", value));
             }
         }
 
         return response;
     }
 
-    @SuppressWarnings("unchecked")
-    private static Json convertFormToJson(String value) {
-        if(StringUtils.isBlank(value)){
-            return Json.map();
+    /**
+     * Detects the format of the content from its first characters, without parsing it.
+     */
+    static DetectedFormat detectFormat(String value) {
+        final int length = value.length();
+        int i = 0;
+        if (length > 0 && value.charAt(0) == '\uFEFF') {
+            // byte order mark
+            i++;
         }
-        final String normalizedString = value.replaceAll("&(?![#a-zA-Z0-9]+;)", "|||");
-        final String[] parts = normalizedString.split("\\|\\|\\|");
-        Json response = Json.map();
-
-        for (String part : parts) {
-            String[] p = part.split("=", 2);
-            if(p.length > 1){
-                if(p[0].contains("[")){
-                    String[] k = p[0].split("[\\[\\]]+");
-                    Map<String, Object> map = response.toMap();
-                    Map<String, Object> actual = map;
-                    for (int i = 0; i < k.length-1 ; i++) {
-                        if(!actual.containsKey(k[i])) {
-                            actual.put(k[i], new HashMap<>());
-                        }
-                        actual = (Map<String, Object>) actual.get(k[i]);
-                    }
-                    actual.put(k[k.length-1], parse(p[1]));
-                    response = Json.fromMap(map);
-                } else {
-                    response.set(p[0], parse(p[1]));
-                }
-            }
+        while (i < length && Character.isWhitespace(value.charAt(i))) {
+            i++;
         }
-        return response;
+        if (i == length) {
+            return DetectedFormat.FORM;
+        }
+        final char c = value.charAt(i);
+        if (c == '{' || c == '[') {
+            return DetectedFormat.JSON;
+        }
+        if (c == '<') {
+            return DetectedFormat.XML;
+        }
+        if (c == '"' || c == '-' || Character.isDigit(c) || value.startsWith("true", i) || value.startsWith("false", i) || value.startsWith("null", i)) {
+            // it could be a JSON value
+            return DetectedFormat.UNKNOWN;
+        }
+        // neither JSON nor XML, so it can only be parsed as a form
+        return DetectedFormat.FORM;
     }
 
-    private static Object parse(Object o){
-        try {
-            final String decodedString = URLDecoder.decode(o.toString(), StandardCharsets.UTF_8);
-            try {
-                return Json.fromObject(decodedString);
-            } catch (Exception ex) {
-                return decodedString;
+    enum DetectedFormat {
+        JSON, XML, FORM, UNKNOWN;
+
+        private DetectedFormat[] attempts;
+
+        static {
+            JSON.attempts = new DetectedFormat[]{JSON, XML, FORM};
+            XML.attempts = new DetectedFormat[]{XML, JSON, FORM};
+            FORM.attempts = new DetectedFormat[]{FORM, JSON, XML};
+            UNKNOWN.attempts = new DetectedFormat[]{JSON, XML, FORM};
+        }
+
+        private Json parse(String value) {
+            switch (this) {
+                case JSON:
+                    return Json.parse(value);
+                case XML:
+                    return XmlHelper.xmlToJson(value);
+                default:
+                    return convertFormToJson(value);
             }
-        } catch (Exception ex) {
-            return o;
         }
     }
+
+    private static Json convertFormToJson(String value) {
+        return FormDecoder.toJson(value);
+    }
 }
@@ -50,6 +50,10 @@ public final class ToStringConverter {
         return Json.fromList(message).toString();
     }
 
+    /**
+     * Converts without an exchange, so emails are converted without an {@link AttachmentStore} and their
+     * attachments bigger than the max size are skipped.
+     */
     public static String fromObject(Object message) {
         return fromObject(message, null);
     }
@@ -79,7 +83,7 @@ public final class ToStringConverter {
                 return null;
             }
         } else if (message instanceof Multipart) {
-            return EmailHelper.convertMultipart((Multipart) message).toString();
+            return EmailHelper.convertMultipart((Multipart) message, EmailHelper.getAttachmentStore(exchange)).toString();
         } else {
             return message.toString();
         }
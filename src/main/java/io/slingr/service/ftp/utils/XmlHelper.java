@@ -1,24 +1,257 @@
 package io.slingr.service.ftp.utils;
 
+import io.slingr.services.exceptions.ErrorCode;
 import io.slingr.services.exceptions.ServiceException;
 import io.slingr.services.utils.Json;
-import io.slingr.services.utils.converters.XmlToJsonParser;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * <p>Helper that permits interacting with XML documents.
  */
 public class XmlHelper {
 
+    private static final String ATTRIBUTE_PREFIX = "@";
+    private static final String TEXT_KEY = "keyValue";
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("-?(?:0|[1-9][0-9]*)(?:\\.[0-9]+)?(?:[eE][+-]?[0-9]+)?");
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
     /**
      * Converts the XML document to an equivalent Json object using the
      * <a href="https://developer.mozilla.org/en-US/docs/JXON">the JXON principles.</a>
+     * Documents in strings are converted in the same way as streams, so the Json doesn't depend on where
+     * the document comes from.
      *
      * @param xml XML document to convert
-     * @return equivalent Json
+     * @return equivalent Json, with the name of the root element as key
      * @throws ServiceException if any error happens
      */
     public static Json xmlToJson(String xml) throws ServiceException {
-        return XmlToJsonParser.parse(xml);
+        return xmlToJson(new StringReader(StringUtils.defaultString(xml)));
+    }
+
+    /**
+     * Converts the XML document read from the stream to an equivalent Json object using the JXON principles.
+     * The document is read with StAX, so only the resulting Json is kept in memory.
+     *
+     * @param is stream with the XML document to convert
+     * @return equivalent Json, with the name of the root element as key
+     * @throws ServiceException if any error happens
+     */
+    public static Json xmlToJson(InputStream is) throws ServiceException {
+        try {
+            return readDocument(createReader(is));
+        } catch (XMLStreamException ex) {
+            throw ServiceException.permanent(ErrorCode.ARGUMENT, String.format("Invalid XML document: %s", ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Converts the XML document read from the reader in the same way as {@link #xmlToJson(InputStream)}.
+     *
+     * @param characters reader with the XML document to convert
+     * @return equivalent Json, with the name of the root element as key
+     * @throws ServiceException if any error happens
+     */
+    public static Json xmlToJson(Reader characters) throws ServiceException {
+        try {
+            return readDocument(INPUT_FACTORY.createXMLStreamReader(characters));
+        } catch (XMLStreamException ex) {
+            throw ServiceException.permanent(ErrorCode.ARGUMENT, String.format("Invalid XML document: %s", ex.getMessage()), ex);
+        }
+    }
+
+    private static Json readDocument(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return readElement(reader);
+                }
+            }
+            return Json.map();
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Converts each element with the given name to Json as soon as it is read, so documents with many
+     * repeated elements can be processed without keeping them in memory. Elements inside of an element
+     * that was already emitted are not emitted again.
+     *
+     * @param is stream with the XML document
+     * @param elementName local name of the elements to emit, or null for the children of the root element
+     * @param consumer receives each element converted to Json, with the name of the element as key
+     * @return amount of emitted elements
+     * @throws ServiceException if any error happens
+     */
+    public static int xmlToJson(InputStream is, String elementName, Consumer<Json> consumer) throws ServiceException {
+        XMLStreamReader reader = null;
+        try {
+            reader = createReader(is);
+            final String name = StringUtils.trimToNull(elementName);
+            int depth = 0;
+            int emitted = 0;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (name == null ? depth == 2 : name.equals(reader.getLocalName())) {
+                        consumer.accept(readElement(reader));
+                        depth--;
+                        emitted++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return emitted;
+        } catch (XMLStreamException ex) {
+            throw ServiceException.permanent(ErrorCode.ARGUMENT, String.format("Invalid XML document: %s", ex.getMessage()), ex);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Converts the element where the reader is positioned, including its children, and leaves the reader
+     * at the end of the element.
+     *
+     * @param reader reader positioned at the start of an element
+     * @return the element converted to Json, with the name of the element as key
+     */
+    static Json readElement(XMLStreamReader reader) throws XMLStreamException {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put(elementName(reader), readValue(reader));
+        return Json.fromMap(map);
     }
 
-}
\ No newline at end of file
+    /**
+     * Elements without attributes nor children are converted to their text, or null if they are empty.
+     * Otherwise they are converted to a map with the attributes prefixed with '@', the children, which are
+     * lists when they are repeated, and the text in 'keyValue'. Each text between the children is trimmed
+     * before it is joined to the rest of the text of the element.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object readValue(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, Object> map = null;
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (map == null) {
+                map = new LinkedHashMap<>();
+            }
+            final String prefix = reader.getAttributePrefix(i);
+            final String name = StringUtils.isNotEmpty(prefix) ? prefix + ":" + reader.getAttributeLocalName(i) : reader.getAttributeLocalName(i);
+            map.put(ATTRIBUTE_PREFIX + name, parseText(reader.getAttributeValue(i)));
+        }
+        StringBuilder text = null;
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (map == null) {
+                    map = new LinkedHashMap<>();
+                }
+                final String name = elementName(reader);
+                final Object child = readValue(reader);
+                final Object previous = map.get(name);
+                if (previous == null && !map.containsKey(name)) {
+                    map.put(name, child);
+                } else if (previous instanceof RepeatedElements) {
+                    ((List<Object>) previous).add(child);
+                } else {
+                    final List<Object> list = new RepeatedElements();
+                    list.add(previous);
+                    list.add(child);
+                    map.put(name, list);
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (!reader.isWhiteSpace()) {
+                    if (text == null) {
+                        text = new StringBuilder();
+                    }
+                    text.append(reader.getText().trim());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        final Object value = text != null ? parseText(text.toString()) : null;
+        if (map == null) {
+            return value;
+        }
+        if (value != null) {
+            map.put(TEXT_KEY, value);
+        }
+        return map;
+    }
+
+    /**
+     * Creates a StAX reader that doesn't resolve DTDs nor external entities.
+     */
+    static XMLStreamReader createReader(InputStream is) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(is);
+    }
+
+    private static String elementName(XMLStreamReader reader) {
+        final String prefix = reader.getPrefix();
+        return StringUtils.isNotEmpty(prefix) ? prefix + ":" + reader.getLocalName() : reader.getLocalName();
+    }
+
+    private static Object parseText(String value) {
+        final String text = value.trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        if ("true".equalsIgnoreCase(text)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(text)) {
+            return false;
+        }
+        if (NUMBER_PATTERN.matcher(text).matches()) {
+            try {
+                if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+                    return Long.parseLong(text);
+                }
+                return Double.parseDouble(text);
+            } catch (NumberFormatException ex) {
+                return text;
+            }
+        }
+        return text;
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException ex) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * List of the values of an element that appears more than once, to tell it apart from other values.
+     */
+    private static class RepeatedElements extends ArrayList<Object> {
+    }
+}
@@ -0,0 +1,72 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the repeated elements of a XML document as records. Records are the elements with the given name,
+ * or the children of the root element when no name is given. Each record is converted to Json while it is
+ * read, with the same rules of {@link XmlHelper#xmlToJson(InputStream)}.
+ */
+public class XmlRecordReader implements RecordReader {
+
+    private final InputStream is;
+    private final XMLStreamReader reader;
+    private final String recordElement;
+    private int depth = 0;
+
+    public XmlRecordReader(InputStream is, String recordElement) throws IOException {
+        this.is = is;
+        this.recordElement = StringUtils.trimToNull(recordElement);
+        try {
+            this.reader = XmlHelper.createReader(is);
+        } catch (XMLStreamException ex) {
+            throw new IOException(String.format("Invalid XML document: %s", ex.getMessage()), ex);
+        }
+    }
+
+    @Override
+    public Json next() throws IOException {
+        try {
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (isRecord()) {
+                        final Json record = XmlHelper.readElement(reader);
+                        depth--;
+                        return record;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return null;
+        } catch (XMLStreamException ex) {
+            throw new IOException(String.format("Invalid XML document: %s", ex.getMessage()), ex);
+        }
+    }
+
+    private boolean isRecord() {
+        if (recordElement == null) {
+            return depth == 2;
+        }
+        return recordElement.equals(reader.getLocalName());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            // nothing to do, the stream is closed below
+        }
+        is.close();
+    }
+}
@@ -0,0 +1,37 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.services.utils.Json;
+import org.apache.camel.Exchange;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class FilesServiceTest {
+
+    // uploads are streamed so the file is not downloaded from the app
+    private final FilesService filesService = new FilesService(null, null, false, "in", "archive", "out/",
+            ProcessorOptions.fromConfiguration(Json.map().set("streamUploads", "enabled")), new Metrics(), null, null);
+
+    @Test
+    public void folderIsPartOfTheFileName() {
+        final Map<String, String> headers = new HashMap<>();
+
+        filesService.downloadFile(Json.map().set("fileId", "f1").set("folder", "/orders/2020/"), headers);
+
+        assertEquals("orders/2020/f1", headers.get(Exchange.FILE_NAME));
+        assertEquals("out/orders/2020/f1", headers.get(FilesService.HEADER_FILE_PATH));
+    }
+
+    @Test
+    public void fileWithoutFolderIsStoredInTheOutputFolder() {
+        final Map<String, String> headers = new HashMap<>();
+
+        filesService.downloadFile(Json.map().set("fileId", " f1 "), headers);
+
+        assertEquals("f1", headers.get(Exchange.FILE_NAME));
+        assertEquals("out/f1", headers.get(FilesService.HEADER_FILE_PATH));
+    }
+}
@@ -0,0 +1,126 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.JndiRegistry;
+import org.apache.camel.processor.idempotent.FileIdempotentRepository;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Files dropped again with the same path, size and modification time are skipped, even though the key of the
+ * processed file is taken from its archived copy, which has another name.
+ */
+public class ProcessedFilesTest extends CamelTestSupport {
+
+    private static final long MODIFIED = 1700000000000L;
+
+    private File root;
+    private File input;
+    private ProcessedFiles processedFiles;
+    private ProcessedFiles recursiveProcessedFiles;
+
+    @Override
+    protected JndiRegistry createRegistry() throws Exception {
+        root = Files.createTempDirectory("processed-files").toFile();
+        input = new File(root, "input");
+        processedFiles = newProcessedFiles(new File(input, "flat"), false, "store.dat");
+        recursiveProcessedFiles = newProcessedFiles(new File(input, "tree"), true, "recursive-store.dat");
+        final JndiRegistry registry = super.createRegistry();
+        registry.bind("filter", new InboundFileFilter<>(null, processedFiles, null, ReadLock.CHANGED, 0, 0));
+        registry.bind("recursiveFilter", new InboundFileFilter<>(null, recursiveProcessedFiles, null, ReadLock.CHANGED, 0, 0));
+        return registry;
+    }
+
+    private ProcessedFiles newProcessedFiles(File inputFolder, boolean recursive, String store) throws Exception {
+        final ProcessedFiles files = new ProcessedFiles(FileIdempotentRepository.fileIdempotentRepository(new File(root, store)),
+                recursive, folder(inputFolder), folder(new File(root, recursive ? "recursive-archive" : "archive")));
+        files.start();
+        return files;
+    }
+
+    @After
+    public void deleteFolders() throws Exception {
+        processedFiles.stop();
+        recursiveProcessedFiles.stop();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        return new RouteBuilder() {
+            @Override
+            public void configure() {
+                from(fileUri(new File(input, "flat"), "archive", false, "filter"))
+                        .bean(processedFiles, ProcessedFiles.PROCESSED_FILES_METHOD_PROCESSED)
+                        .to("mock:newFile");
+                from(fileUri(new File(input, "tree"), "recursive-archive", true, "recursiveFilter"))
+                        .bean(recursiveProcessedFiles, ProcessedFiles.PROCESSED_FILES_METHOD_PROCESSED)
+                        .to("mock:newRecursiveFile");
+            }
+        };
+    }
+
+    private String fileUri(File inputFolder, String archive, boolean recursive, String filter) {
+        final String preMove = Processor.archiveExpression(new File(root, archive).getAbsolutePath() + "/", ArchiveGrouping.MONTHLY, recursive, ".a1b2c3d4");
+        return "file:" + inputFolder.getAbsolutePath() + "?initialDelay=0&delay=50&filter=#" + filter + "&recursive=" + recursive
+                + "&flatten=false&readLock=none&preMove=" + preMove;
+    }
+
+    @Test
+    public void fileDroppedTwiceIsSentOnce() throws Exception {
+        assertDroppedTwiceIsSentOnce(new File(input, "flat"), "data.csv", getMockEndpoint("mock:newFile"));
+    }
+
+    @Test
+    public void fileInSubFolderDroppedTwiceIsSentOnce() throws Exception {
+        assertDroppedTwiceIsSentOnce(new File(input, "tree/sub"), "data.csv", getMockEndpoint("mock:newRecursiveFile"));
+    }
+
+    @Test
+    public void changedFileIsSentAgain() throws Exception {
+        final MockEndpoint newFile = getMockEndpoint("mock:newFile");
+        newFile.expectedMessageCount(1);
+        drop(new File(input, "flat"), "data.csv", "a,b\n1,2\n");
+        newFile.assertIsSatisfied();
+
+        newFile.reset();
+        newFile.expectedMessageCount(1);
+        drop(new File(input, "flat"), "data.csv", "a,b\n1,2\n3,4\n");
+        newFile.assertIsSatisfied();
+    }
+
+    private void assertDroppedTwiceIsSentOnce(File folder, String name, MockEndpoint newFile) throws Exception {
+        newFile.expectedMessageCount(1);
+        drop(folder, name, "a,b\n1,2\n");
+        newFile.assertIsSatisfied();
+
+        final File again = drop(folder, name, "a,b\n1,2\n");
+        newFile.setAssertPeriod(1000);
+        newFile.assertIsSatisfied();
+        assertTrue("Skipped file is left in the input folder", again.exists());
+    }
+
+    private File drop(File folder, String name, String content) throws IOException {
+        // the file is completed outside the input folder, so it is never listed with another modification time
+        final File staged = new File(root, "staged-" + name);
+        FileUtils.writeStringToFile(staged, content, StandardCharsets.UTF_8);
+        assertTrue(staged.setLastModified(MODIFIED));
+        final File file = new File(folder, name);
+        FileUtils.forceMkdir(folder);
+        Files.move(staged.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    private static String folder(File file) {
+        return Processor.normalizeFolder(file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,125 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.services.utils.Json;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.model.ProcessorDefinitionHelper;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.ToDefinition;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessorTest {
+
+    @Test
+    public void archivedNameHasTheInstanceIdOfMultipleInstances() {
+        assertEquals("archive/${date:now:yyyyMMddHHmmss}.a1b2c3d4-${file:onlyname}",
+                Processor.archiveExpression("archive/", ArchiveGrouping.NONE, false, ".a1b2c3d4"));
+    }
+
+    @Test
+    public void archivedNameWithoutInstanceIdIsTheDateAndTheName() {
+        // a single instance keeps the names it always had
+        assertEquals("archive/${date:now:yyyyMMddHHmmss}-${file:onlyname}",
+                Processor.archiveExpression("archive/", ArchiveGrouping.NONE, false, ""));
+    }
+
+    @Test
+    public void archivedNameKeepsTheGroupAndTheParentFolder() {
+        assertEquals("archive/${date:now:" + ArchiveGrouping.MONTHLY.getFormat() + "}/${file:parent}/${date:now:yyyyMMddHHmmss}.a1b2c3d4-${file:onlyname}",
+                Processor.archiveExpression("archive/", ArchiveGrouping.MONTHLY, true, ".a1b2c3d4"));
+    }
+
+    @Test
+    public void foldersAreNormalized() {
+        assertEquals("in/orders", Processor.normalizeFolder(" /in/orders/ "));
+        assertEquals("", Processor.normalizeFolder("/"));
+        assertEquals("", Processor.normalizeFolder(null));
+    }
+
+    @Test
+    public void persistentFtpConnectionsAreCheckedWithNoop() throws Exception {
+        final DefaultCamelContext context = configure("ftp", "enabled");
+
+        for (Map<String, String> options : endpointOptions(context)) {
+            assertEquals("false", options.get("disconnect"));
+            assertEquals("true", options.get("sendNoop"));
+            assertFalse(options.containsKey("serverAliveInterval"));
+        }
+    }
+
+    @Test
+    public void persistentSftpConnectionsAreKeptAlive() throws Exception {
+        final DefaultCamelContext context = configure("sftp", "enabled");
+
+        for (Map<String, String> options : endpointOptions(context)) {
+            assertEquals("false", options.get("disconnect"));
+            assertEquals("30000", options.get("serverAliveInterval"));
+            assertEquals("3", options.get("serverAliveCountMax"));
+            assertFalse(options.containsKey("sendNoop"));
+        }
+    }
+
+    @Test
+    public void connectionsAreClosedAfterEachUseByDefault() throws Exception {
+        final DefaultCamelContext context = configure("ftp", null);
+
+        for (Map<String, String> options : endpointOptions(context)) {
+            assertEquals("true", options.get("disconnect"));
+            assertFalse(options.containsKey("sendNoop"));
+            assertFalse(options.containsKey("serverAliveInterval"));
+        }
+    }
+
+    @Test
+    public void uploadsOfAllFoldersShareOneEndpoint() throws Exception {
+        final DefaultCamelContext context = configure("ftp", "enabled");
+
+        final List<ToDefinition> uploads = uploadEndpoints(context);
+        assertEquals(1, uploads.size());
+        assertTrue(uploads.get(0).getUri(), uploads.get(0).getUri().startsWith("ftp://user@localhost:21/out/?"));
+    }
+
+    private static DefaultCamelContext configure(String protocol, String persistentConnections) throws Exception {
+        final ProcessorOptions options = ProcessorOptions.fromConfiguration(Json.map()
+                .setIfNotEmpty("persistentConnections", persistentConnections));
+        final Processor processor = new Processor(null, null, null, "test", true, protocol, "localhost", null,
+                "user", null, null, "in", "archive", "none", false, "out", options);
+        // routes are only defined, the context is not started so nothing connects to the server
+        final DefaultCamelContext context = new DefaultCamelContext();
+        context.addRoutes(processor);
+        return context;
+    }
+
+    private static List<Map<String, String>> endpointOptions(DefaultCamelContext context) {
+        final List<Map<String, String>> endpoints = new ArrayList<>();
+        endpoints.add(options(context.getRouteDefinition("ftp-new-file-event").getInputs().get(0).getUri()));
+        for (ToDefinition upload : uploadEndpoints(context)) {
+            endpoints.add(options(upload.getUri()));
+        }
+        return endpoints;
+    }
+
+    private static List<ToDefinition> uploadEndpoints(DefaultCamelContext context) {
+        final RouteDefinition route = context.getRouteDefinition("ftp-upload-file");
+        final List<ToDefinition> uploads = new ArrayList<>();
+        ProcessorDefinitionHelper.filterTypeInOutputs(route.getOutputs(), ToDefinition.class).forEachRemaining(uploads::add);
+        return uploads;
+    }
+
+    private static Map<String, String> options(String uri) {
+        final Map<String, String> options = new HashMap<>();
+        for (String option : StringUtils.substringAfter(uri, "?").split("&")) {
+            options.put(StringUtils.substringBefore(option, "="), StringUtils.substringAfter(option, "="));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,80 @@
+package io.slingr.service.ftp.beans;
+
+import io.slingr.services.services.AppLogs;
+import io.slingr.services.services.Events;
+import io.slingr.services.services.Files;
+import io.slingr.services.services.rest.DownloadedFile;
+import io.slingr.services.utils.Json;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.model.ProcessorDefinitionHelper;
+import org.apache.camel.model.ToDefinition;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Uploads go through the routes of the processor, with the store on the server replaced by a mock endpoint.
+ */
+public class ProcessorUploadTest extends CamelTestSupport {
+
+    private final Events events = mock(Events.class);
+    private final Files files = mock(Files.class);
+    private Processor processor;
+
+    @Override
+    public boolean isUseAdviceWith() {
+        return true;
+    }
+
+    @Override
+    protected RouteBuilder createRouteBuilder() {
+        when(files.metadata("f1")).thenReturn(Json.map().set("fileName", "report.txt"));
+        when(files.download("f1")).thenAnswer(invocation -> {
+            final DownloadedFile file = mock(DownloadedFile.class);
+            when(file.file()).thenReturn(new ByteArrayInputStream("id,name\n1,Ann\n".getBytes(StandardCharsets.UTF_8)));
+            return file;
+        });
+        processor = new Processor(mock(AppLogs.class), events, files, "test", true, "ftp", "localhost", null,
+                "user", null, null, "in", "archive", "none", false, "out", ProcessorOptions.defaults());
+        return processor;
+    }
+
+    @Test
+    public void asyncUploadIsStoredOnceAndNotifiedOnce() throws Exception {
+        // the routes are only defined until the context is started, so the endpoints of the server are replaced
+        context.getRouteDefinition("ftp-new-file-event").getInputs().get(0).setUri("direct:newFiles");
+        ProcessorDefinitionHelper.filterTypeInOutputs(context.getRouteDefinition("ftp-upload-file").getOutputs(), ToDefinition.class)
+                .forEachRemaining(store -> store.setUri("mock:store"));
+        context.start();
+        final MockEndpoint store = getMockEndpoint("mock:store");
+        store.expectedMessageCount(1);
+        store.expectedHeaderReceived(Exchange.FILE_NAME, "reports/report.txt");
+        // more attempts would be stored after the first one
+        store.setAssertPeriod(500);
+
+        final String jobId = processor.sendFileAsync("f1", "reports");
+
+        store.assertIsSatisfied();
+        final ArgumentCaptor<Json> result = ArgumentCaptor.forClass(Json.class);
+        verify(events, timeout(5000)).send(eq("uploadCompleted"), result.capture());
+        verify(events, after(500).never()).send(eq("uploadFailed"), any());
+        verify(events).send(anyString(), any());
+        assertEquals(jobId, result.getValue().string("jobId"));
+        assertEquals("f1", result.getValue().string("fileId"));
+        assertEquals("out/reports/report.txt", result.getValue().string("filePath"));
+    }
+}
@@ -0,0 +1,162 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteClientPoolTest {
+
+    private static final long BORROW_TIMEOUT = 100;
+
+    private final FakeRemoteClient remoteClient = new FakeRemoteClient();
+
+    @Test
+    public void releasedConnectionIsReused() throws IOException {
+        final RemoteClientPool pool = new RemoteClientPool(remoteClient, 2, BORROW_TIMEOUT);
+
+        final FTPClient client = pool.borrow();
+        pool.release(client);
+
+        assertSame(client, pool.borrow());
+        assertEquals(1, remoteClient.connected.size());
+        assertEquals(1, pool.getActive());
+        assertEquals(0, pool.getIdle());
+    }
+
+    @Test
+    public void borrowFailsWhenAllConnectionsAreBorrowed() throws IOException {
+        final RemoteClientPool pool = new RemoteClientPool(remoteClient, 1, BORROW_TIMEOUT);
+        pool.borrow();
+
+        assertBorrowTimesOut(pool);
+        assertEquals(1, remoteClient.connected.size());
+    }
+
+    @Test
+    public void connectionGivenBackTwiceIsCountedOnce() throws IOException {
+        final RemoteClientPool pool = new RemoteClientPool(remoteClient, 1, BORROW_TIMEOUT);
+        final FTPClient client = pool.borrow();
+        pool.release(client);
+        pool.release(client);
+        pool.invalidate(client);
+
+        pool.borrow();
+
+        assertBorrowTimesOut(pool);
+    }
+
+    @Test
+    public void invalidatedConnectionIsClosedAndReplaced() throws IOException {
+        final RemoteClientPool pool = new RemoteClientPool(remoteClient, 1, BORROW_TIMEOUT);
+        final FTPClient client = pool.borrow();
+
+        pool.invalidate(client);
+
+        assertEquals(1, remoteClient.closed.size());
+        assertNotSame(client, pool.borrow());
+        assertEquals(2, remoteClient.connected.size());
+    }
+
+    @Test
+    public void idleConnectionClosedByTheServerIsReplaced() throws IOException {
+        final RemoteClientPool pool = new RemoteClientPool(remoteClient, 1, BORROW_TIMEOUT);
+        final FakeFtpClient client = (FakeFtpClient) pool.borrow();
+        pool.release(client);
+        client.alive = false;
+
+        assertNotSame(client, pool.borrow());
+        assertTrue(remoteClient.closed.contains(client));
+    }
+
+    @Test
+    public void failedCommandClosesItsConnection() throws IOException {
+        final RemoteClientPool pool = new RemoteClientPool(remoteClient, 1, BORROW_TIMEOUT);
+
+        try {
+            pool.execute(client -> {
+                throw new IOException("Transfer failed");
+            });
+            fail("The command should fail");
+        } catch (IOException ex) {
+            assertEquals("Transfer failed", ex.getMessage());
+        }
+
+        assertEquals(1, remoteClient.closed.size());
+        assertEquals(0, pool.getActive());
+        assertEquals("done", pool.execute(client -> "done"));
+        assertEquals(1, pool.getIdle());
+    }
+
+    @Test
+    public void failedConnectGivesBackItsPermit() throws IOException {
+        final RemoteClientPool pool = new RemoteClientPool(remoteClient, 1, BORROW_TIMEOUT);
+        remoteClient.refuse = true;
+        try {
+            pool.borrow();
+            fail("The connection should be refused");
+        } catch (IOException ex) {
+            // expected
+        }
+        remoteClient.refuse = false;
+
+        pool.borrow();
+        assertEquals(1, pool.getActive());
+    }
+
+    private static void assertBorrowTimesOut(RemoteClientPool pool) {
+        try {
+            pool.borrow();
+            fail("No connection should be available");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("No connection to the server was released"));
+        }
+    }
+
+    private static class FakeRemoteClient extends RemoteClient {
+        private final List<FTPClient> connected = new ArrayList<>();
+        private final List<FTPClient> closed = new ArrayList<>();
+        private boolean refuse = false;
+
+        FakeRemoteClient() {
+            super(Protocol.FTP, "localhost", "21", "user", "password");
+        }
+
+        @Override
+        public FTPClient connect() throws IOException {
+            if (refuse) {
+                throw new IOException("Connection refused by server");
+            }
+            final FTPClient client = new FakeFtpClient();
+            connected.add(client);
+            return client;
+        }
+
+        @Override
+        public void close(FTPClient client) {
+            closed.add(client);
+        }
+    }
+
+    private static class FakeFtpClient extends FTPClient {
+        private boolean alive = true;
+
+        @Override
+        public boolean isConnected() {
+            return alive;
+        }
+
+        @Override
+        public boolean sendNoOp() {
+            return alive;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RemoteClientTest {
+
+    private final RemoteClient remoteClient = new RemoteClient(Protocol.FTP, "localhost", "21", "user", "password");
+
+    @Test
+    public void stateHasTheModificationTimeAndSizeOfTheServer() throws Exception {
+        final ScriptedFtpClient client = new ScriptedFtpClient()
+                .reply("MDTM", 213, "213 20240105101500.123")
+                .reply("SIZE", 213, "213 1048576");
+
+        final String state = remoteClient.state(client, "out/data.csv");
+
+        assertEquals("20240105101500.123 1048576", state);
+        assertEquals(1048576L, RemoteClient.stateSize(state));
+    }
+
+    @Test
+    public void missingFileHasNoState() throws Exception {
+        final ScriptedFtpClient client = new ScriptedFtpClient()
+                .reply("MDTM", 550, "550 out/data.csv: No such file or directory");
+
+        assertNull(remoteClient.state(client, "out/data.csv"));
+    }
+
+    @Test
+    public void fileWithoutSizeHasNoState() throws Exception {
+        final ScriptedFtpClient client = new ScriptedFtpClient()
+                .reply("MDTM", 213, "213 20240105101500")
+                .reply("SIZE", 502, "502 Command not implemented");
+
+        assertNull(remoteClient.state(client, "out/data.csv"));
+    }
+
+    @Test
+    public void invalidStateHasNoSize() {
+        assertEquals(0, RemoteClient.stateSize(""));
+        assertEquals(0, RemoteClient.stateSize(null));
+        assertEquals(0, RemoteClient.stateSize("20240105101500 big"));
+    }
+
+    /**
+     * Answers each command with the reply given for it.
+     */
+    private static class ScriptedFtpClient extends FTPClient {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final Map<String, String> replies = new HashMap<>();
+        private String lastReply = "";
+
+        ScriptedFtpClient reply(String command, int code, String reply) {
+            codes.put(command, code);
+            replies.put(command, reply);
+            return this;
+        }
+
+        @Override
+        public int sendCommand(String command, String args) {
+            lastReply = replies.getOrDefault(command, "500 Unknown command");
+            return codes.getOrDefault(command, 500);
+        }
+
+        @Override
+        public String getReplyString() {
+            return lastReply + "\r\n";
+        }
+    }
+}
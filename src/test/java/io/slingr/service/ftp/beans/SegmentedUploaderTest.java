@@ -0,0 +1,277 @@
+package io.slingr.service.ftp.beans;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.net.ftp.FTPClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedUploaderTest {
+
+    private static final String PATH = "out/big.bin";
+    private static final int SEGMENTS = 4;
+
+    private final FakeServer server = new FakeServer();
+    private final ExecutorService executor = Executors.newFixedThreadPool(SEGMENTS - 1);
+    private byte[] content;
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        content = new byte[300 * 1024 + 7];
+        new Random(17).nextBytes(content);
+        file = File.createTempFile("segmented", ".bin");
+        FileUtils.writeByteArrayToFile(file, content);
+    }
+
+    @After
+    public void deleteFile() {
+        executor.shutdownNow();
+        FileUtils.deleteQuietly(file);
+    }
+
+    @Test
+    public void segmentsAreStoredAtTheirOffsets() throws Exception {
+        final SegmentedUploader uploader = newUploader();
+        final ChecksumInputStream checksum = checksumOfTheFile();
+
+        uploader.upload(exchange(checksum));
+
+        assertArrayEquals(content, server.file(PATH));
+        assertEquals(0, server.wholeStores);
+        assertEquals(SEGMENTS, server.segmentStores);
+        // the content that was not written by the first segment was read to compute the checksum
+        assertEquals(expectedChecksum(), checksum.getValue());
+        assertTrue(uploader.accepts(content.length));
+    }
+
+    @Test
+    public void fileIsStoredWholeWhenTheServerRefusesRestartsForUploads() throws Exception {
+        for (String reply : Arrays.asList("451 Restart not permitted", "550 Not allowed", "553 Can't restart")) {
+            final FakeServer refusing = new FakeServer();
+            refusing.restartReply = reply;
+            final SegmentedUploader uploader = new SegmentedUploader(new RemoteClientPool(new FakeRemoteClient(refusing), SEGMENTS, 1000), SEGMENTS, 1024);
+            uploader.setExecutor(executor);
+            final ChecksumInputStream checksum = checksumOfTheFile();
+
+            uploader.upload(exchange(checksum));
+
+            assertArrayEquals(reply, content, refusing.file(PATH));
+            assertEquals(reply, 1, refusing.wholeStores);
+            assertEquals(reply, expectedChecksum(), checksum.getValue());
+            // next files are stored over a single connection
+            assertFalse(reply, uploader.accepts(content.length));
+        }
+    }
+
+    @Test
+    public void lastSegmentIsSmaller() {
+        final List<SegmentedUploader.Segment> parts = SegmentedUploader.split(10, 4);
+
+        assertSegments(parts, new long[][]{{0, 3}, {3, 3}, {6, 3}, {9, 1}});
+    }
+
+    @Test
+    public void evenLengthIsSplitInEqualSegments() {
+        final List<SegmentedUploader.Segment> parts = SegmentedUploader.split(12, 4);
+
+        assertSegments(parts, new long[][]{{0, 3}, {3, 3}, {6, 3}, {9, 3}});
+    }
+
+    @Test
+    public void smallFileHasFewerSegments() {
+        assertSegments(SegmentedUploader.split(3, 4), new long[][]{{0, 1}, {1, 1}, {2, 1}});
+        // 3 segments of 2 bytes already cover the file
+        assertSegments(SegmentedUploader.split(6, 4), new long[][]{{0, 2}, {2, 2}, {4, 2}});
+        assertSegments(SegmentedUploader.split(1, 4), new long[][]{{0, 1}});
+    }
+
+    @Test
+    public void segmentsCoverBigFilesWithoutGapsNorOverlaps() {
+        final long length = 5L * 1024 * 1024 * 1024 + 7;
+        for (int count = 1; count <= 16; count++) {
+            final List<SegmentedUploader.Segment> parts = SegmentedUploader.split(length, count);
+            assertTrue(parts.size() <= count);
+            long offset = 0;
+            for (SegmentedUploader.Segment part : parts) {
+                assertEquals(offset, part.getOffset());
+                assertTrue(part.getSize() > 0);
+                offset += part.getSize();
+            }
+            assertEquals(length, offset);
+        }
+    }
+
+    private static void assertSegments(List<SegmentedUploader.Segment> parts, long[][] expected) {
+        assertEquals(expected.length, parts.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("offset of segment " + i, expected[i][0], parts.get(i).getOffset());
+            assertEquals("size of segment " + i, expected[i][1], parts.get(i).getSize());
+        }
+    }
+
+    private SegmentedUploader newUploader() {
+        final SegmentedUploader uploader = new SegmentedUploader(new RemoteClientPool(new FakeRemoteClient(server), SEGMENTS, 1000), SEGMENTS, 1024);
+        uploader.setExecutor(executor);
+        return uploader;
+    }
+
+    private Exchange exchange(InputStream body) {
+        final Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(FilesService.HEADER_LOCAL_FILE_PATH, file.getAbsolutePath());
+        exchange.getIn().setHeader(FilesService.HEADER_FILE_PATH, PATH);
+        exchange.getIn().setBody(body);
+        return exchange;
+    }
+
+    private ChecksumInputStream checksumOfTheFile() throws IOException {
+        return new ChecksumInputStream(new FileInputStream(file), ChecksumAlgorithm.MD5);
+    }
+
+    private String expectedChecksum() throws IOException {
+        final ChecksumInputStream checksum = new ChecksumInputStream(new ByteArrayInputStream(content), ChecksumAlgorithm.MD5);
+        IOUtils.consume(checksum);
+        return checksum.getValue();
+    }
+
+    /**
+     * Files of the server, written at the offset of the REST sent before each STOR.
+     */
+    private static class FakeServer {
+        private byte[] data = new byte[0];
+        private String restartReply;
+        private int segmentStores;
+        private int wholeStores;
+
+        synchronized void truncate() {
+            data = new byte[0];
+        }
+
+        synchronized void write(long offset, byte[] bytes, int length) {
+            final int end = (int) offset + length;
+            if (end > data.length) {
+                data = Arrays.copyOf(data, end);
+            }
+            System.arraycopy(bytes, 0, data, (int) offset, length);
+        }
+
+        synchronized byte[] file(String path) {
+            return PATH.equals(path) ? data.clone() : null;
+        }
+    }
+
+    private static class FakeRemoteClient extends RemoteClient {
+        private final FakeServer server;
+
+        FakeRemoteClient(FakeServer server) {
+            super(Protocol.FTP, "localhost", "21", "user", "password");
+            this.server = server;
+        }
+
+        @Override
+        public FTPClient connect() {
+            return new FakeFtpClient(server);
+        }
+
+        @Override
+        public void close(FTPClient client) {
+            // nothing to close
+        }
+    }
+
+    private static class FakeFtpClient extends FTPClient {
+        private final FakeServer server;
+        private String reply = "200 OK";
+
+        FakeFtpClient(FakeServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean sendNoOp() {
+            return true;
+        }
+
+        @Override
+        public boolean makeDirectory(String pathname) {
+            return true;
+        }
+
+        @Override
+        public OutputStream storeFileStream(String remote) {
+            final long offset = getRestartOffset();
+            if (offset > 0 && server.restartReply != null) {
+                reply = server.restartReply;
+                return null;
+            }
+            synchronized (server) {
+                if (offset == 0) {
+                    server.truncate();
+                }
+                server.segmentStores++;
+            }
+            return new OutputStream() {
+                private long position = offset;
+
+                @Override
+                public void write(int b) {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    server.write(position, Arrays.copyOfRange(b, off, off + len), len);
+                    position += len;
+                }
+            };
+        }
+
+        @Override
+        public boolean completePendingCommand() {
+            reply = "226 Transfer complete";
+            return true;
+        }
+
+        @Override
+        public boolean storeFile(String remote, InputStream local) throws IOException {
+            final byte[] bytes = IOUtils.toByteArray(local);
+            synchronized (server) {
+                server.truncate();
+                server.write(0, bytes, bytes.length);
+                server.wholeStores++;
+            }
+            return true;
+        }
+
+        @Override
+        public String getReplyString() {
+            return reply;
+        }
+    }
+}
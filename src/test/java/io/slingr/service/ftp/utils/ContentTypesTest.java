@@ -0,0 +1,96 @@
+package io.slingr.service.ftp.utils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContentTypesTest {
+
+    @After
+    public void clearCustomTypes() {
+        ContentTypes.setCustomTypes(null);
+    }
+
+    @Test
+    public void detectsBinaryFormatsBySignature() throws IOException {
+        assertEquals("application/pdf", fromContent(bytes(0x25, 0x50, 0x44, 0x46, 0x2D, 0x31)));
+        assertEquals("image/png", fromContent(bytes(0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A)));
+        assertEquals("image/jpeg", fromContent(bytes(0xFF, 0xD8, 0xFF, 0xE0)));
+        assertEquals("image/gif", fromContent("GIF89a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("application/zip", fromContent(bytes(0x50, 0x4B, 0x03, 0x04, 0x14)));
+        assertEquals("application/gzip", fromContent(bytes(0x1F, 0x8B, 0x08)));
+    }
+
+    @Test
+    public void detectsTextFormatsByTheirFirstCharacter() throws IOException {
+        assertEquals("application/json", fromContent(utf8("  \n{\"a\":1}")));
+        assertEquals("application/json", fromContent(utf8("﻿[1,2]")));
+        assertEquals("application/xml", fromContent(utf8("<?xml version=\"1.0\"?><a/>")));
+        assertEquals("text/html", fromContent(utf8("<!DOCTYPE html><html></html>")));
+        assertEquals("text/html", fromContent(utf8("\n<HTML><body></body></HTML>")));
+        assertEquals("text/plain", fromContent(utf8("id,name\n1,Ann\n")));
+        assertEquals("text/plain", fromContent(utf8("ñandú\tcafé\r\n")));
+    }
+
+    @Test
+    public void unknownBinaryContentIsNotDetected() throws IOException {
+        assertNull(fromContent(bytes(0x00, 0x01, 0x02, 0x03)));
+        assertNull(fromContent(new byte[0]));
+    }
+
+    @Test
+    public void onlyTheFirstBytesAreChecked() throws IOException {
+        // a control character after the sniffed bytes doesn't make the content binary
+        final String text = StringUtils.repeat('a', ContentTypes.SNIFF_SIZE) + "\u0000";
+
+        assertEquals("text/plain", fromContent(utf8(text)));
+    }
+
+    @Test
+    public void streamIsResetToTheStart() throws IOException {
+        final byte[] content = utf8("{\"a\":\"" + StringUtils.repeat('b', 2 * ContentTypes.SNIFF_SIZE) + "\"}");
+        final InputStream is = new BufferedInputStream(new ByteArrayInputStream(content));
+
+        assertEquals("application/json", ContentTypes.fromContent(is));
+        assertArrayEquals(content, IOUtils.toByteArray(is));
+    }
+
+    @Test
+    public void customTypesAreUsedBeforeTheDefaultOnes() {
+        assertEquals("text/plain", ContentTypes.fromFileName("notes.TXT"));
+
+        ContentTypes.setCustomTypes(Collections.singletonMap(".txt", "text/x-notes"));
+
+        assertEquals("text/x-notes", ContentTypes.fromFileName("notes.txt"));
+        assertNull(ContentTypes.fromFileName("data.unknown-extension"));
+        assertNull(ContentTypes.fromFileName("no-extension"));
+    }
+
+    private static String fromContent(byte[] content) throws IOException {
+        return ContentTypes.fromContent(new ByteArrayInputStream(content));
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
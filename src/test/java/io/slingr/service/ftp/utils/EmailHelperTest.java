@@ -0,0 +1,151 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.impl.SimpleRegistry;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import javax.mail.Multipart;
+import javax.mail.Session;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EmailHelperTest {
+
+    // separators of the previous implementation, which applied the five patterns one after the other
+    private static final String SPACERS = "[\\s,/\\.\\-]";
+    private static final String DAY = "(?:(?:Mon(?:day)?)|(?:Tue(?:sday)?)|(?:Wed(?:nesday)?)|(?:Thu(?:rsday)?)|(?:Fri(?:day)?)|(?:Sat(?:urday)?)|(?:Sun(?:day)?))";
+    private static final String DAY_OF_MONTH = String.format("[0-3]?[0-9]%s*(?:(?:th)|(?:st)|(?:nd)|(?:rd))?", SPACERS);
+    private static final String MONTH = "(?:(?:Jan(?:uary)?)|(?:Feb(?:uary)?)|(?:Mar(?:ch)?)|(?:Apr(?:il)?)|(?:May)|(?:Jun(?:e)?)|(?:Jul(?:y)?)|(?:Aug(?:ust)?)|(?:Sep(?:tember)?)|(?:Oct(?:ober)?)|(?:Nov(?:ember)?)|(?:Dec(?:ember)?)|(?:[0-1]?[0-9]))";
+    private static final String YEAR = "(?:[1-2]?[0-9])[0-9][0-9]";
+    private static final String TIME = "(?:[0-2])?[0-9]:[0-5][0-9](?::[0-5][0-9])?(?:(?:\\s)?[AP]M)?";
+    private static final String DATE = String.format("(?:%s%s+)?(?:(?:%s%s+%s)|(?:%s%s+%s))%s+%s", DAY, SPACERS, DAY_OF_MONTH, SPACERS, MONTH, MONTH, SPACERS, DAY_OF_MONTH, SPACERS, YEAR);
+    private static final String DATE_TIME = String.format("(?:%s[\\s,]*(?:(?:at)|(?:@))?\\s*%s)|(?:%s[\\s,]*(?:on)?\\s*%s)", DATE, TIME, TIME, DATE);
+    private static final String DATE_TIME_IPHONE = String.format("(?:%s[\\s,]*(?:(?:at)|(?:@))?\\s*%s)|(?:%s[\\s,]*(?:on)?\\s*%s)", "([0-9]{4})-([0-9]{2})-([0-9]{2})", TIME, TIME, DATE);
+    private static final Pattern[] PREVIOUS_SEPARATORS = {
+            Pattern.compile("-+\\s*(?:Original(?:\\sMessage)?)?\\s*-+(\n|\\<br\\>)"),
+            Pattern.compile(String.format("(On\\s+%s.*wrote:(\n|\\<br\\>))", DATE_TIME)),
+            Pattern.compile("(From:\\s+.*(\n|\\<br\\>))(Sent:\\s+.*(\n|\\<br\\>))", Pattern.MULTILINE),
+            Pattern.compile(String.format("(On\\s+%s.*wrote:(\n|\\<br\\>))", DATE_TIME_IPHONE)),
+            Pattern.compile("\\<blockquote.*id.*replyBlockquote")
+    };
+
+    private static final String[] REPLIES = {
+            "Thanks, it works now.",
+            "Thanks!\r\n\r\n-----Original Message-----\r\nFrom: Support\r\nSent: Monday\r\n\r\nHello",
+            "Sounds good.\n\nOn Mon, Jan 5, 2015 at 10:15 AM, John Doe <john@example.com> wrote:\n> Can we meet?",
+            "Sounds good.\n\nOn 5 January 2015 10:15, John Doe <john@example.com> wrote:\n> Can we meet?",
+            "See below\n\nFrom: John Doe [mailto:john@example.com]\nSent: Monday, January 05, 2015 10:15 AM\nTo: Support\nSubject: Help\n\nHello",
+            "Sent from my iPhone\n\nOn 2015-01-05 at 10:15, John Doe <john@example.com> wrote:\n\nHi",
+            "<div>Yes</div><blockquote type=\"cite\" id=\"replyBlockquote\"><div>Question?</div></blockquote>",
+            "Done<br>-------- Original Message --------<br>Subject: Task",
+            "Two answers\n\nOn Tue, Feb 3, 2015 at 9:00 AM, Jane <jane@example.com> wrote:\n> ok\n-----Original Message-----\nold",
+            "A list:\n- first\n- second\n--\nSignature",
+            "From: the start of a sentence without a sent line\nOn the other hand nobody wrote anything",
+            "Thanks!\n\nAt 10:30 AM on Jan 5, 2020 John <j@x.com> wrote:\n> quoted",
+            "Meeting at 10:30 tomorrow, see https://example.com:8080/agenda\nBye",
+            "   \n\n"
+    };
+
+    @Test
+    public void bigAttachmentIsWrittenToTheStoreOfTheExchange() throws Exception {
+        final List<String> stored = new ArrayList<>();
+        final SimpleRegistry registry = new SimpleRegistry();
+        registry.put(EmailHelper.ATTACHMENT_STORE, (AttachmentStore) (fileName, contentType, content) -> {
+            stored.add(fileName + ":" + IOUtils.toByteArray(content).length);
+            return Json.map().set("fileId", "f1");
+        });
+        final Exchange exchange = new DefaultExchange(new DefaultCamelContext(registry));
+
+        final Json email = ToJsonConverter.fromMultipart(emailWithAttachment(EmailHelper.ATTACHMENT_MAX_SIZE + 1), exchange);
+
+        assertEquals(Arrays.asList("big.bin:" + (EmailHelper.ATTACHMENT_MAX_SIZE + 1)), stored);
+        assertEquals("f1", attachment(email).json("file").string("fileId"));
+    }
+
+    @Test
+    public void bigAttachmentIsSkippedWithoutStore() throws Exception {
+        final Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+
+        final Json email = ToJsonConverter.fromMultipart(emailWithAttachment(EmailHelper.ATTACHMENT_MAX_SIZE + 1), exchange);
+
+        assertNull(attachment(email).json("file"));
+        assertTrue(attachment(email).isEmpty("content"));
+    }
+
+    @Test
+    public void stripOutOriginalMessageIsLikeThePreviousImplementation() {
+        for (String reply : REPLIES) {
+            assertEquals(reply, previousStripOutOriginalMessage(reply), EmailHelper.stripOutOriginalMessage(reply));
+        }
+    }
+
+    @Test
+    public void stripOutOriginalMessageCutsAtTheFirstSeparator() {
+        assertEquals("Thanks!", EmailHelper.stripOutOriginalMessage(REPLIES[1]));
+        assertEquals("Sounds good.", EmailHelper.stripOutOriginalMessage(REPLIES[2]));
+        assertEquals("See below", EmailHelper.stripOutOriginalMessage(REPLIES[4]));
+        assertEquals("<div>Yes</div>", EmailHelper.stripOutOriginalMessage(REPLIES[6]));
+        assertEquals("Two answers", EmailHelper.stripOutOriginalMessage(REPLIES[8]));
+        // the separator starts with the time instead of 'On'
+        assertEquals("Thanks!\n\nAt", EmailHelper.stripOutOriginalMessage(REPLIES[11]));
+        assertNull(EmailHelper.stripOutOriginalMessage(null));
+    }
+
+    private static String previousStripOutOriginalMessage(String email) {
+        email = email.replaceAll("\\r", "");
+        for (Pattern separator : PREVIOUS_SEPARATORS) {
+            final Matcher matcher = separator.matcher(email);
+            if (matcher.find()) {
+                email = email.substring(0, matcher.start());
+            }
+        }
+        return email.trim();
+    }
+
+    private static Json attachment(Json email) {
+        for (Json part : email.jsons("parts")) {
+            if ("big.bin".equals(part.string("fileName"))) {
+                return part;
+            }
+        }
+        throw new AssertionError("There is no attachment in " + email);
+    }
+
+    private static Multipart emailWithAttachment(int size) throws Exception {
+        final Session session = Session.getInstance(new Properties());
+        final MimeMessage message = new MimeMessage(session);
+        message.setSubject("Report");
+        final MimeMultipart multipart = new MimeMultipart();
+        final MimeBodyPart text = new MimeBodyPart();
+        text.setText("See attached");
+        multipart.addBodyPart(text);
+        final MimeBodyPart file = new MimeBodyPart();
+        file.setContent(new byte[size], "application/octet-stream");
+        file.setFileName("big.bin");
+        file.setDisposition(MimeBodyPart.ATTACHMENT);
+        multipart.addBodyPart(file);
+        message.setContent(multipart);
+        message.saveChanges();
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        message.writeTo(os);
+        // parsed again, like the emails that are read from files
+        return (Multipart) new MimeMessage(session, new ByteArrayInputStream(os.toByteArray())).getContent();
+    }
+}
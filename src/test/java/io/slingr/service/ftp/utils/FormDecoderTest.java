@@ -0,0 +1,93 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FormDecoderTest {
+
+    @Test
+    public void decodesPlusAndPercentEscapes() {
+        final Json form = FormDecoder.toJson("name=John+Doe&city=S%C3%A3o%20Paulo&note=caf%C3%A9+%E2%82%AC");
+
+        assertEquals("John Doe", form.string("name"));
+        assertEquals("São Paulo", form.string("city"));
+        assertEquals("café €", form.string("note"));
+    }
+
+    @Test
+    public void decodesEscapesMixedWithPlainCharacters() {
+        final Json form = FormDecoder.toJson("q=ñand%C3%BA+😀%21");
+
+        assertEquals("ñandú 😀!", form.string("q"));
+    }
+
+    @Test
+    public void keepsInvalidEscapesAsTheyAre() {
+        final Json form = FormDecoder.toJson("rate=100%&code=%zz&key%=v");
+
+        assertEquals("100%", form.string("rate"));
+        assertEquals("%zz", form.string("code"));
+        assertEquals("v", form.string("key%"));
+    }
+
+    @Test
+    public void nestsKeysWithBrackets() {
+        final Json form = FormDecoder.toJson("user[name]=Ann&user[address][city]=Paris&user[address][zip]=75001");
+
+        final Json user = form.json("user");
+        assertEquals("Ann", user.string("name"));
+        assertEquals("Paris", user.json("address").string("city"));
+        assertEquals(75001L, user.json("address").object("zip"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsWhenKeyHasValueAndNestedFields() {
+        FormDecoder.toJson("a=1&a[b]=2");
+    }
+
+    @Test
+    public void coercesValuesThatLookLikeNumbersBooleansOrJson() {
+        final Json form = FormDecoder.toJson("n=-12&d=1.5e2&t=true&f=false&j=%7B%22k%22%3A1%7D&l=%5B1%2C2%5D");
+
+        assertEquals(-12L, form.object("n"));
+        assertEquals(150.0, form.object("d"));
+        assertEquals(true, form.object("t"));
+        assertEquals(false, form.object("f"));
+        assertEquals(1, form.json("j").integer("k").intValue());
+        assertEquals(2, ((Json) form.object("l")).toList().size());
+    }
+
+    @Test
+    public void keepsValuesThatAreNotQuiteNumbersAsStrings() {
+        final Json form = FormDecoder.toJson("zip=01234&version=1.&exp=2e&id=12abc&big=99999999999999999999&bad=%7Bnot");
+
+        assertEquals("01234", form.object("zip"));
+        assertEquals("1.", form.object("version"));
+        assertEquals("2e", form.object("exp"));
+        assertEquals("12abc", form.object("id"));
+        assertEquals("99999999999999999999", form.object("big"));
+        assertEquals("{not", form.object("bad"));
+    }
+
+    @Test
+    public void ignoresFieldsWithoutEqualsAndKeepsEntities() {
+        final Json form = FormDecoder.toJson("a=1&flag&b=fish&amp;chips&c=&&d=2");
+
+        assertEquals(1L, form.object("a"));
+        assertFalse(form.contains("flag"));
+        assertEquals("fish&amp;chips", form.string("b"));
+        assertEquals("", form.string("c"));
+        assertEquals(2L, form.object("d"));
+    }
+
+    @Test
+    public void blankFormIsEmpty() {
+        assertTrue(FormDecoder.toJson("").isEmpty());
+        assertTrue(FormDecoder.toJson("  ").isEmpty());
+        assertTrue(FormDecoder.toJson(null).isEmpty());
+    }
+}
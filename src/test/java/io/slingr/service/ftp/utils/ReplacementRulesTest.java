@@ -0,0 +1,83 @@
+package io.slingr.service.ftp.utils;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReplacementRulesTest {
+
+    @Test
+    public void replacedTextIsNotCheckedAgain() {
+        final ReplacementRules rules = ReplacementRules.compile(rules("a", "b", "b", "c"));
+
+        assertEquals("bc", rules.apply("ab"));
+    }
+
+    @Test
+    public void firstRuleWinsAtTheSamePosition() {
+        final ReplacementRules rules = ReplacementRules.compile(rules("ab", "X", "a", "Y"));
+
+        assertEquals("XYc", rules.apply("abac"));
+    }
+
+    @Test
+    public void groupReferencesAreTheOnesOfTheirRule() {
+        final ReplacementRules rules = ReplacementRules.compile(rules("(x)(y)", "$2$1", "(\\d+)-(\\d+)", "$2-$1"));
+
+        assertEquals("yx 2-1", rules.apply("xy 1-2"));
+    }
+
+    @Test
+    public void escapedDollarIsKept() {
+        final ReplacementRules rules = ReplacementRules.compile(rules("price", "\\$1", "\\\\", "/"));
+
+        assertEquals("$1 a/b", rules.apply("price a\\b"));
+    }
+
+    @Test
+    public void nullReplacementRemovesTheMatch() {
+        final ReplacementRules rules = ReplacementRules.compile(rules("\\s+", null));
+
+        assertEquals("abc", rules.apply("a b\tc"));
+    }
+
+    @Test
+    public void textWithoutMatchesIsReturnedAsItIs() {
+        final ReplacementRules rules = ReplacementRules.compile(rules("z", "y"));
+        final String text = "abc";
+
+        assertSame(text, rules.apply(text));
+    }
+
+    @Test
+    public void noRulesAreEmpty() {
+        assertSame(ReplacementRules.NONE, ReplacementRules.compile(null));
+        assertSame(ReplacementRules.NONE, ReplacementRules.compile(Collections.emptyMap()));
+        assertTrue(ReplacementRules.NONE.isEmpty());
+        assertEquals("abc", ReplacementRules.NONE.apply("abc"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPatternFails() {
+        ReplacementRules.compile(rules("(a", "b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void referenceToMissingGroupFails() {
+        ReplacementRules.compile(rules("(a)", "$2"));
+    }
+
+    private static Map<String, String> rules(String... patternsAndReplacements) {
+        final Map<String, String> rules = new LinkedHashMap<>();
+        for (int i = 0; i < patternsAndReplacements.length; i += 2) {
+            rules.put(patternsAndReplacements[i], patternsAndReplacements[i + 1]);
+        }
+        return rules;
+    }
+}
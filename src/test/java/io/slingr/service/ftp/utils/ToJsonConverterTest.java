@@ -0,0 +1,73 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * XML streams are converted with the same converter whether or not there are string replacements.
+ */
+public class ToJsonConverterTest {
+
+    private static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<order id=\"17\" xmlns:x=\"urn:x\">\n"
+            + "  <customer>ACME</customer>\n"
+            + "  <item sku=\"A-1\"><qty>2</qty><price>10.5</price></item>\n"
+            + "  <item sku=\"B-2\"><qty>1</qty><price>3</price></item>\n"
+            + "  <note lang=\"en\">Deliver <![CDATA[after 5pm]]></note>\n"
+            + "  <x:paid>true</x:paid>\n"
+            + "  <empty/>\n"
+            + "</order>";
+
+    @After
+    public void clearReplacements() {
+        ToJsonConverter.setStringReplaces(null);
+    }
+
+    @Test
+    public void xmlWithReplacementsIsConvertedLikeWithout() {
+        final Json withoutReplacements = convert(DOCUMENT);
+
+        ToJsonConverter.setStringReplaces(Collections.singletonMap("NOT_IN_THE_DOCUMENT", "x"));
+        final Json withReplacements = convert(DOCUMENT);
+
+        assertNotNull(withoutReplacements);
+        assertEquals(withoutReplacements.toMap(), withReplacements.toMap());
+    }
+
+    @Test
+    public void replacementsAreAppliedBeforeConverting() {
+        final Json expected = convert(DOCUMENT.replace("ACME", "Acme Inc."));
+
+        ToJsonConverter.setStringReplaces(Collections.singletonMap("ACME", "Acme Inc."));
+        final Json converted = convert(DOCUMENT);
+
+        assertEquals(expected.toMap(), converted.toMap());
+        assertEquals("Acme Inc.", converted.json("order").string("customer"));
+    }
+
+    @Test
+    public void readerIsConvertedLikeStream() {
+        final Json fromStream = XmlHelper.xmlToJson(new ByteArrayInputStream(DOCUMENT.getBytes(StandardCharsets.UTF_8)));
+        final Json fromReader = XmlHelper.xmlToJson(new StringReader(DOCUMENT));
+
+        assertEquals(fromStream.toMap(), fromReader.toMap());
+    }
+
+    private static Json convert(String document) {
+        final Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(Exchange.CONTENT_TYPE, "application/xml");
+        return ToJsonConverter.fromInputStream(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)), exchange);
+    }
+}
@@ -0,0 +1,58 @@
+package io.slingr.service.ftp.utils;
+
+import io.slingr.services.utils.Json;
+import io.slingr.services.utils.converters.XmlToJsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * XML documents are converted with StAX in the same way as the parser of the framework that was used before.
+ */
+public class XmlHelperTest {
+
+    @Test
+    public void attributesAreConvertedLikeTheFrameworkParser() {
+        assertLikeTheFrameworkParser("<order id=\"17\" status=\"open\"><customer vip=\"true\">ACME</customer></order>");
+    }
+
+    @Test
+    public void mixedTextIsConvertedLikeTheFrameworkParser() {
+        assertLikeTheFrameworkParser("<note lang=\"en\">Deliver <b>only</b> after\n  <i>5pm</i> please</note>");
+        assertLikeTheFrameworkParser("<note>Deliver <![CDATA[after <5pm>]]></note>");
+    }
+
+    @Test
+    public void repeatedElementsAreConvertedLikeTheFrameworkParser() {
+        assertLikeTheFrameworkParser("<items><item sku=\"A-1\"><qty>2</qty></item><item sku=\"B-2\"><qty>1</qty></item><total>3</total><item>C-3</item></items>");
+    }
+
+    @Test
+    public void namespacesAreConvertedLikeTheFrameworkParser() {
+        assertLikeTheFrameworkParser("<x:order xmlns:x=\"urn:x\" xmlns=\"urn:default\" x:id=\"17\"><x:paid>true</x:paid><amount>10.5</amount></x:order>");
+    }
+
+    @Test
+    public void emptyElementsAreConvertedLikeTheFrameworkParser() {
+        assertLikeTheFrameworkParser("<order><empty/><blank>  </blank><flagged on=\"yes\"/></order>");
+        assertLikeTheFrameworkParser("<empty/>");
+    }
+
+    @Test
+    public void stringIsConvertedLikeStream() {
+        final String xml = "<order id=\"17\"><item>1</item><item>2</item><note>a <b/> c</note></order>";
+
+        assertEquals(fromStream(xml).toMap(), XmlHelper.xmlToJson(xml).toMap());
+    }
+
+    private static void assertLikeTheFrameworkParser(String xml) {
+        assertEquals(xml, XmlToJsonParser.parse(xml).toMap(), fromStream(xml).toMap());
+    }
+
+    private static Json fromStream(String xml) {
+        return XmlHelper.xmlToJson(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}